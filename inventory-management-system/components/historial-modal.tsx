@@ -48,8 +48,8 @@ export function ProductHistoryModal({ isOpen, onClose }: ProductHistoryModalProp
     const fetchHistorial = async () => {
         setIsLoading(true)
         try {
-            const response = await obtenerHistorialCompleto(0, 100) // Obtener últimos 100 movimientos
-            setMovimientos(response.data)
+            const response = await obtenerHistorialCompleto(100) // Obtener últimos 100 movimientos
+            setMovimientos(response.data.contenido)
         } catch (error) {
             console.error("Error al cargar historial:", error)
         } finally {
@@ -103,7 +103,7 @@ export function ProductHistoryModal({ isOpen, onClose }: ProductHistoryModalProp
     const movimientosFiltrados = movimientos.filter(movimiento => {
         const cumpleTipo = !filtros.tipo || movimiento.tipo === filtros.tipo
         const cumpleUsuario = !filtros.usuario || movimiento.usuario.toLowerCase().includes(filtros.usuario.toLowerCase())
-        const cumpleProducto = !filtros.producto || movimiento.producto.nombre.toLowerCase().includes(filtros.producto.toLowerCase())
+        const cumpleProducto = !filtros.producto || movimiento.productoNombre.toLowerCase().includes(filtros.producto.toLowerCase())
         return cumpleTipo && cumpleUsuario && cumpleProducto
     })
 
@@ -294,9 +294,9 @@ export function ProductHistoryModal({ isOpen, onClose }: ProductHistoryModalProp
                                                         <div className="flex items-center gap-2">
                                                             <Package className="h-4 w-4 text-gray-500" />
                                                             <div>
-                                                                <span className="font-medium">{movimiento.producto.nombre}</span>
+                                                                <span className="font-medium">{movimiento.productoNombre}</span>
                                                                 <br />
-                                                                <span className="text-xs text-gray-500">{movimiento.producto.categoria}</span>
+                                                                <span className="text-xs text-gray-500">{movimiento.productoCategoria}</span>
                                                             </div>
                                                         </div>
                                                     </TableCell>
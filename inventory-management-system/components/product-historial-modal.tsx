@@ -42,8 +42,8 @@ export function ProductHistorialModal({ isOpen, onClose, productId }: ProductHis
 
         setIsLoading(true)
         try {
-            const response = await obtenerHistorialPorProducto(productId)
-            setMovimientos(response.data)
+            const response = await obtenerHistorialPorProducto(productId, 100)
+            setMovimientos(response.data.contenido)
         } catch (error) {
             console.error("Error al cargar historial del producto:", error)
         } finally {
@@ -23,7 +23,7 @@ import { Input } from "@/components/ui/input"
 import { Select, SelectContent, SelectItem, SelectTrigger, SelectValue } from "@/components/ui/select"
 import { Table, TableBody, TableCell, TableHead, TableHeader, TableRow } from "@/components/ui/table"
 import { Dialog, DialogContent, DialogHeader, DialogTitle, DialogTrigger } from "@/components/ui/dialog"
-import { obtenerHistorialCompleto, MovimientoHistorial } from "@/services/movimientoService"
+import { obtenerHistorialCompleto, suscribirMovimientos, MovimientoHistorial } from "@/services/movimientoService"
 
 interface ProductHistoryModalProps {
   isOpen: boolean
@@ -40,16 +40,20 @@ export function ProductHistoryModal({ isOpen, onClose }: ProductHistoryModalProp
   })
 
   useEffect(() => {
-    if (isOpen) {
-      fetchHistorial()
-    }
+    if (!isOpen) return
+    fetchHistorial()
+    // Mientras el modal está abierto los movimientos nuevos llegan por el stream, sin volver a consultar
+    return suscribirMovimientos(
+        (movimiento) => setMovimientos((actuales) => [movimiento, ...actuales.filter((m) => m.id !== movimiento.id)].slice(0, 100)),
+        () => fetchHistorial(),
+    )
   }, [isOpen])
 
   const fetchHistorial = async () => {
     setIsLoading(true)
     try {
-      const response = await obtenerHistorialCompleto(0, 100) // Obtener últimos 100 movimientos
-      setMovimientos(response.data)
+      const response = await obtenerHistorialCompleto(100) // Obtener últimos 100 movimientos
+      setMovimientos(response.data.contenido)
     } catch (error) {
       console.error("Error al cargar historial:", error)
     } finally {
@@ -166,9 +170,9 @@ export function ProductHistoryModal({ isOpen, onClose }: ProductHistoryModalProp
                                   <div className="flex items-center gap-2">
                                     <Package className="h-4 w-4 text-gray-500" />
                                     <div>
-                                      <span className="font-medium">{movimiento.producto.nombre}</span>
+                                      <span className="font-medium">{movimiento.productoNombre}</span>
                                       <br />
-                                      <span className="text-xs text-gray-500">{movimiento.producto.categoria}</span>
+                                      <span className="text-xs text-gray-500">{movimiento.productoCategoria}</span>
                                     </div>
                                   </div>
                                 </TableCell>
@@ -29,12 +29,9 @@ authApi.interceptors.request.use(
 // Tipos para Movimientos
 export interface MovimientoHistorial {
   id: number
-  producto: {
-    id: number
-    nombre: string
-    categoria: string
-    descripcion: string
-  }
+  productoId: number
+  productoNombre: string
+  productoCategoria: string
   usuario: string
   tipo: string // "CREACION", "ACTUALIZACION", "ENTRADA", "SALIDA"
   cantidad: number
@@ -42,15 +39,82 @@ export interface MovimientoHistorial {
   fechaMovimiento: string
 }
 
+// Página del historial; siguienteCursor es null en la última página
+export interface PaginaMovimientos {
+  contenido: MovimientoHistorial[]
+  tamanio: number
+  siguienteCursor: string | null
+}
+
+const paginaParams = (size: number, cursor?: string | null) => ({
+  params: cursor ? { size, cursor } : { size },
+})
+
 // Servicios de Movimientos
-export const obtenerHistorialCompleto = (page = 0, size = 50) =>
-    authApi.get(`${MOVIMIENTOS_URL}?page=${page}&size=${size}`)
+export const obtenerHistorialCompleto = (size = 50, cursor?: string | null) =>
+    authApi.get<PaginaMovimientos>(MOVIMIENTOS_URL, paginaParams(size, cursor))
+
+export const obtenerHistorialPorProducto = (productoId: number, size = 50, cursor?: string | null) =>
+    authApi.get<PaginaMovimientos>(`${MOVIMIENTOS_URL}/${productoId}`, paginaParams(size, cursor))
+
+export const obtenerHistorialPorUsuario = (usuario: string, size = 50, cursor?: string | null) =>
+    authApi.get<PaginaMovimientos>(`${MOVIMIENTOS_URL}/usuario/${usuario}`, paginaParams(size, cursor))
+
+export const obtenerHistorialPorTipo = (tipo: string, size = 50, cursor?: string | null) =>
+    authApi.get<PaginaMovimientos>(`${MOVIMIENTOS_URL}/tipo/${tipo}`, paginaParams(size, cursor))
+
+// Feed en vivo (SSE). EventSource no admite la cabecera Authorization, así que se lee con fetch.
+// Reconecta con Last-Event-ID; con "reinicio" el servidor ya no tiene los eventos perdidos y hay que recargar.
+export const suscribirMovimientos = (
+    alRecibir: (movimiento: MovimientoHistorial) => void,
+    alReiniciar: () => void,
+) => {
+  const controlador = new AbortController()
+  let ultimoId: string | null = null
 
-export const obtenerHistorialPorProducto = (productoId: number) =>
-    authApi.get(`${MOVIMIENTOS_URL}/${productoId}`)
+  const leer = async () => {
+    const session = await getSession()
+    const headers: Record<string, string> = { Accept: 'text/event-stream' }
+    if (session?.accessToken) headers.Authorization = `Bearer ${session.accessToken}`
+    if (ultimoId) headers['Last-Event-ID'] = ultimoId
 
-export const obtenerHistorialPorUsuario = (usuario: string) =>
-    authApi.get(`${MOVIMIENTOS_URL}/usuario/${usuario}`)
+    const respuesta = await fetch(`${API_BASE_URL}${MOVIMIENTOS_URL}/stream`, { headers, signal: controlador.signal })
+    if (!respuesta.ok || !respuesta.body) throw new Error(`Stream de movimientos: ${respuesta.status}`)
 
-export const obtenerHistorialPorTipo = (tipo: string) =>
-    authApi.get(`${MOVIMIENTOS_URL}/tipo/${tipo}`)
+    const lector = respuesta.body.pipeThrough(new TextDecoderStream()).getReader()
+    let pendiente = ''
+    for (;;) {
+      const { value, done } = await lector.read()
+      if (done) return
+      pendiente += value
+      let fin
+      while ((fin = pendiente.indexOf('\n\n')) >= 0) {
+        const bloque = pendiente.slice(0, fin)
+        pendiente = pendiente.slice(fin + 2)
+        let evento = 'message', datos = ''
+        for (const linea of bloque.split('\n')) {
+          if (linea.startsWith('id:')) ultimoId = linea.slice(3).trim()
+          else if (linea.startsWith('event:')) evento = linea.slice(6).trim()
+          else if (linea.startsWith('data:')) datos += linea.slice(5)
+        }
+        if (evento === 'movimiento') alRecibir(JSON.parse(datos))
+        else if (evento === 'reinicio') alReiniciar()
+      }
+    }
+  }
+
+  const conectar = async () => {
+    while (!controlador.signal.aborted) {
+      try {
+        await leer()
+      } catch (error) {
+        if (controlador.signal.aborted) return
+        console.error('Stream de movimientos interrumpido:', error)
+      }
+      await new Promise((resolver) => setTimeout(resolver, 3000))
+    }
+  }
+  conectar()
+
+  return () => controlador.abort()
+}
@@ -50,7 +50,7 @@ export interface Producto {
 
 // Servicios (igual que antes)
 export const listarProductos = () => 
-  axios.get(`${API_BASE_URL}${PRODUCTOS_URL}/listar`)
+  axios.get(`${API_BASE_URL}${PRODUCTOS_URL}/listar?completo=true`)
 
 export const crearProducto = (producto: Producto) => 
   authApi.post(PRODUCTOS_URL, producto)
@@ -0,0 +1,121 @@
+package org.example.proyectofinal.benchmarks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.example.proyectofinal.utils.DecodificadorJwtCacheado;
+import org.example.proyectofinal.utils.KeycloakRoleConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por petición de autenticar un Bearer token: verificación del JWT más conversión de roles.
+ * "sinCache" reproduce la configuración anterior (verificación completa y authorities nuevas en
+ * cada petición); "conCache" usa el decodificador cacheado y el conversor con authorities internadas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutenticacionJwtBenchmark {
+
+    private static final String ISSUER = "http://localhost:9090/realms/InventarioRealm";
+
+    private String token;
+    private JwtDecoder decodificadorSinCache;
+    private JwtDecoder decodificadorConCache;
+    private JwtAuthenticationConverter conversorSinCache;
+    private JwtAuthenticationConverter conversorConCache;
+
+    @Setup
+    public void preparar() throws JOSEException {
+        RSAKey clave = new RSAKeyGenerator(2048).keyID("bench").generate();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("usuario-bench")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .claim("preferred_username", "bench")
+                .claim("realm_access", Map.of("roles", List.of("ADMIN", "EMPLEADO", "offline_access", "uma_authorization")))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("bench").build(), claims);
+        jwt.sign(new RSASSASigner(clave));
+        token = jwt.serialize();
+
+        DefaultJWTProcessor<SecurityContext> procesador = new DefaultJWTProcessor<>();
+        procesador.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256,
+                new ImmutableJWKSet<>(new JWKSet(clave.toPublicJWK()))));
+        procesador.setJWTClaimsSetVerifier((c, contexto) -> {
+        });
+        NimbusJwtDecoder verificador = new NimbusJwtDecoder(procesador);
+        verificador.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+
+        decodificadorSinCache = verificador;
+        decodificadorConCache = new DecodificadorJwtCacheado(verificador, 10_000, Duration.ofHours(1));
+        conversorSinCache = conversor(new ConversorRolesAnterior());
+        conversorConCache = conversor(new KeycloakRoleConverter());
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken sinCache() {
+        return conversorSinCache.convert(decodificadorSinCache.decode(token));
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken conCache() {
+        return conversorConCache.convert(decodificadorConCache.decode(token));
+    }
+
+    private static JwtAuthenticationConverter conversor(Converter<Jwt, Collection<GrantedAuthority>> roles) {
+        JwtAuthenticationConverter conversor = new JwtAuthenticationConverter();
+        conversor.setJwtGrantedAuthoritiesConverter(roles);
+        return conversor;
+    }
+
+    // Conversión de roles tal como estaba antes del internado de authorities
+    private static class ConversorRolesAnterior implements Converter<Jwt, Collection<GrantedAuthority>> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<GrantedAuthority> convert(Jwt jwt) {
+            Collection<GrantedAuthority> authorities = new ArrayList<>();
+            Map<String, Object> realmAccess = jwt.getClaim("realm_access");
+            if (realmAccess != null && realmAccess.containsKey("roles")) {
+                List<String> roles = (List<String>) realmAccess.get("roles");
+                roles.forEach(r -> authorities.add(new SimpleGrantedAuthority(r)));
+            }
+            return authorities;
+        }
+    }
+}
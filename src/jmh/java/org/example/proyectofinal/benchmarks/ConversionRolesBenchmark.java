@@ -0,0 +1,66 @@
+package org.example.proyectofinal.benchmarks;
+
+import org.example.proyectofinal.utils.KeycloakRoleConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversión de realm_access a authorities para las combinaciones de roles habituales del realm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionRolesBenchmark {
+
+    private final KeycloakRoleConverter conversor = new KeycloakRoleConverter();
+    private Jwt administrador;
+    private Jwt empleado;
+    private Jwt sinRoles;
+
+    @Setup
+    public void preparar() {
+        administrador = jwt(Map.of("realm_access", Map.of("roles",
+                List.of("ADMIN", "EMPLEADO", "offline_access", "uma_authorization", "default-roles-inventariorealm"))));
+        empleado = jwt(Map.of("realm_access", Map.of("roles", List.of("EMPLEADO", "offline_access"))));
+        sinRoles = jwt(Map.of("preferred_username", "anonimo"));
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> administrador() {
+        return conversor.convert(administrador);
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> empleado() {
+        return conversor.convert(empleado);
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> sinRoles() {
+        return conversor.convert(sinRoles);
+    }
+
+    private static Jwt jwt(Map<String, Object> claims) {
+        Instant ahora = Instant.now();
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("bench")
+                .claims(c -> c.putAll(claims))
+                .issuedAt(ahora)
+                .expiresAt(ahora.plusSeconds(3600))
+                .build();
+    }
+}
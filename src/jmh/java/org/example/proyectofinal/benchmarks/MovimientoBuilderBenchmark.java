@@ -0,0 +1,50 @@
+package org.example.proyectofinal.benchmarks;
+
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construcción de movimientos tal como la hace ProductoService en cada escritura.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MovimientoBuilderBenchmark {
+
+    private final Producto producto = Producto.builder()
+            .id(1L)
+            .nombre("Producto")
+            .categoria("Categoria")
+            .precio(10.0)
+            .cantidadInicial(100)
+            .build();
+
+    private int contador;
+
+    @Benchmark
+    public Movimiento builder() {
+        return Movimiento.builder()
+                .producto(producto)
+                .usuario("usuario")
+                .tipo((++contador & 1) == 0 ? "ENTRADA" : "SALIDA")
+                .cantidad(contador & 31)
+                .motivo("Ajuste de stock")
+                .fechaMovimiento(LocalDateTime.now())
+                .build();
+    }
+
+    @Benchmark
+    public MovimientoResumen builderYResumen() {
+        return MovimientoResumen.de(builder());
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.proyectofinal.benchmarks;
+
+import org.example.proyectofinal.ProyectoFinalApplication;
+import org.example.proyectofinal.dto.PaginaCursor;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProductoService completo (transacciones, JPA, índice de búsqueda) sobre H2 en memoria.
+ * La cache de Spring se desactiva para medir el trabajo real de cada llamada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductoServiceBenchmark {
+
+    private static final int PRODUCTOS = 2000;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoService productoService;
+    private long primerId;
+
+    @Setup
+    public void preparar() {
+        contexto = new SpringApplicationBuilder(ProyectoFinalApplication.class)
+                .web(WebApplicationType.NONE)
+                // Como argumentos para que prevalezcan sobre application.properties (PostgreSQL)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=PostgreSQL",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.cache.type=none",
+                        "--seguridad.jwt.jwks-local=",
+                        "--logging.level.root=WARN");
+        productoService = contexto.getBean(ProductoService.class);
+
+        List<Producto> lote = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            lote.add(Producto.builder()
+                    .nombre("Producto bench " + i)
+                    .descripcion("Descripción " + i)
+                    .categoria("Categoria " + (i % 20))
+                    .precio(5.0 + i)
+                    .cantidadInicial(1_000_000)
+                    .build());
+        }
+        primerId = productoService.crearProductosEnLote(lote, "bench").get(0).id();
+    }
+
+    @TearDown
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Producto obtenerPorId() {
+        return productoService.obtenerProductoPorId(idAleatorio());
+    }
+
+    @Benchmark
+    public PaginaCursor<Map<String, Object>> primeraPagina() {
+        return productoService.listarProductosPaginado(null, 50, null);
+    }
+
+    @Benchmark
+    public List<Producto> buscarPorNombre() {
+        return productoService.buscarProductosPorNombre("bench 12", 50);
+    }
+
+    @Benchmark
+    public Producto ajustarCantidad() {
+        // Entradas y salidas alternas para que el stock no se agote
+        int delta = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        return productoService.ajustarCantidad(idAleatorio(), delta, "bench", "bench");
+    }
+
+    private long idAleatorio() {
+        return primerId + ThreadLocalRandom.current().nextInt(PRODUCTOS);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.proyectofinal.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización a JSON de las listas que devuelven los endpoints de productos y movimientos,
+ * con el mismo ObjectMapper que configura Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializacionJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int tamanio;
+
+    private ObjectMapper objectMapper;
+    private List<Producto> productos;
+    private List<Movimiento> movimientos;
+    private List<MovimientoResumen> resumenes;
+
+    @Setup
+    public void preparar() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        productos = new ArrayList<>(tamanio);
+        movimientos = new ArrayList<>(tamanio);
+        resumenes = new ArrayList<>(tamanio);
+        LocalDateTime fecha = LocalDateTime.of(2026, 1, 1, 10, 0);
+        for (int i = 0; i < tamanio; i++) {
+            Producto producto = Producto.builder()
+                    .id((long) i)
+                    .nombre("Producto " + i)
+                    .descripcion("Descripción del producto " + i)
+                    .categoria("Categoria " + (i % 10))
+                    .precio(10.5 + i)
+                    .cantidadInicial(i * 3)
+                    .build();
+            Movimiento movimiento = Movimiento.builder()
+                    .id((long) i)
+                    .producto(producto)
+                    .usuario("usuario" + (i % 5))
+                    .tipo(i % 2 == 0 ? "ENTRADA" : "SALIDA")
+                    .cantidad(i % 20 + 1)
+                    .motivo("Ajuste " + i)
+                    .fechaMovimiento(fecha.plusMinutes(i))
+                    .build();
+            productos.add(producto);
+            movimientos.add(movimiento);
+            resumenes.add(MovimientoResumen.de(movimiento));
+        }
+    }
+
+    @Benchmark
+    public byte[] productos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(productos);
+    }
+
+    @Benchmark
+    public byte[] movimientos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(movimientos);
+    }
+
+    @Benchmark
+    public byte[] movimientosResumen() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resumenes);
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.proyectofinal.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Cache de lecturas de productos. Tamaño, TTL y estadísticas se configuran con
+ * spring.cache.caffeine.spec. Las escrituras no usan anotaciones de cache: las invalida
+ * VersionesProductos tras el commit, justo antes de publicar los ETags nuevos. El interceptor
+ * se ordena por fuera del transaccional para que una lectura cacheada no abra transacción.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String LISTADO_PRODUCTOS = "productosListado";
+    public static final String BUSQUEDA_PRODUCTOS = "productosBusqueda";
+}
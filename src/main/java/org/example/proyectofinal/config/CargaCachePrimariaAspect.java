@@ -0,0 +1,32 @@
+package org.example.proyectofinal.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.example.proyectofinal.utils.DataSourceEnrutado;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Con réplica de lectura, los métodos @Cacheable leen de la primaria: lo que cargan se guarda en
+ * la cache compartida y se sirve a todos, y la réplica puede ir con retraso. En un acierto no hay
+ * consulta, así que solo afecta a las cargas. Se ordena por fuera de la transacción.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty("datasource.replica.jdbc-url")
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+public class CargaCachePrimariaAspect {
+
+    @Around("@annotation(org.springframework.cache.annotation.Cacheable)")
+    public Object cargarDeLaPrimaria(ProceedingJoinPoint punto) throws Throwable {
+        boolean anterior = DataSourceEnrutado.usarSoloPrimaria(true);
+        try {
+            return punto.proceed();
+        } finally {
+            DataSourceEnrutado.usarSoloPrimaria(anterior);
+        }
+    }
+}
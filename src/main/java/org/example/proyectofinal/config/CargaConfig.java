@@ -0,0 +1,76 @@
+package org.example.proyectofinal.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.example.proyectofinal.utils.DecodificadorJwtCacheado;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perfil "carga": la aplicación arranca sola sobre H2 para las pruebas de JMeter (gradle cargaMixta).
+ * Keycloak se sustituye por tokens HMAC firmados localmente (ver TokenCargaController) y al
+ * arrancar se crea un catálogo de productos con stock suficiente para toda la prueba.
+ * Nunca debe activarse en un despliegue real.
+ */
+@Slf4j
+@Configuration
+@Profile(CargaConfig.PERFIL)
+public class CargaConfig {
+
+    public static final String PERFIL = "carga";
+    public static final String ISSUER = "carga-local";
+
+    @Bean
+    public SecretKey claveTokensCarga(@Value("${carga.jwt.secreto}") String secreto) {
+        return new SecretKeySpec(secreto.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(SecretKey claveTokensCarga) {
+        NimbusJwtDecoder verificador = NimbusJwtDecoder.withSecretKey(claveTokensCarga)
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        verificador.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        // Misma cache que en producción para que la prueba mida el mismo camino de autenticación
+        return new DecodificadorJwtCacheado(verificador, 10_000, Duration.ofHours(1));
+    }
+
+    @Bean
+    public ApplicationRunner catalogoCarga(ProductoService productoService,
+                                           @Value("${carga.productos:1000}") int cantidad) {
+        return argumentos -> {
+            int creados = 0;
+            while (creados < cantidad) {
+                int bloque = Math.min(ProductoService.TAMANIO_LOTE_MAXIMO, cantidad - creados);
+                List<Producto> productos = new ArrayList<>(bloque);
+                for (int i = creados; i < creados + bloque; i++) {
+                    productos.add(Producto.builder()
+                            .nombre(String.format("Carga %05d", i))
+                            .descripcion("Producto de prueba de carga " + i)
+                            .categoria("Categoria " + (i % 25))
+                            .precio(1.0 + i % 500)
+                            .cantidadInicial(1_000_000)
+                            .build());
+                }
+                productoService.crearProductosEnLote(productos, "carga");
+                creados += bloque;
+            }
+            log.info("Catálogo de carga creado con {} productos", creados);
+        };
+    }
+}
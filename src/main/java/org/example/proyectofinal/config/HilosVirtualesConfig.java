@@ -0,0 +1,56 @@
+package org.example.proyectofinal.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.proyectofinal.utils.DataSourceLimitado;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Con spring.threads.virtual.enabled=true, Tomcat y los ejecutores de Spring usan hilos virtuales.
+ * Como todos los endpoints bloquean en JDBC, el pool de Hikari pasa a ser el límite real: el
+ * DataSource se envuelve en un {@link DataSourceLimitado} con tantos permisos como conexiones
+ * tiene el pool, para que los hilos esperen en una cola justa y con el mismo timeout de Hikari.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class HilosVirtualesConfig {
+
+    @Bean
+    public static BeanPostProcessor limitadorConexiones() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nombre) {
+                if (bean instanceof HikariDataSource hikari) {
+                    return new DataSourceLimitado(hikari,
+                            hikari.getMaximumPoolSize(), Duration.ofMillis(hikari.getConnectionTimeout()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Un limitador por pool: con ReplicaLecturaConfig hay uno para la primaria y otro para la réplica
+    @Bean
+    public MeterBinder metricasLimitadorConexiones(Map<String, DataSource> dataSources) {
+        return registro -> dataSources.forEach((nombre, dataSource) -> {
+            if (dataSource instanceof DataSourceLimitado limitado) {
+                Gauge.builder("basedatos.limitador.en-espera", limitado, DataSourceLimitado::getEnEspera)
+                        .description("Hilos esperando un permiso de conexión")
+                        .tag("datasource", nombre)
+                        .register(registro);
+                Gauge.builder("basedatos.limitador.disponibles", limitado, DataSourceLimitado::getDisponibles)
+                        .tag("datasource", nombre)
+                        .register(registro);
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.proyectofinal.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.example.proyectofinal.utils.DecodificadorJwtCacheado;
+import org.example.proyectofinal.utils.FuenteJwks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.time.Duration;
+
+/**
+ * Verificación de JWT sin descubrimiento OIDC al arrancar: las claves salen de {@link FuenteJwks}
+ * y los tokens ya verificados se reutilizan hasta su expiración con {@link DecodificadorJwtCacheado}.
+ * Al declarar el JwtDecoder, la autoconfiguración basada en issuer-uri deja de aplicarse; el
+ * issuer se sigue validando en cada token nuevo. En el perfil "carga" lo sustituye {@link CargaConfig}.
+ */
+@Configuration
+@Profile("!" + CargaConfig.PERFIL)
+public class JwtConfig {
+
+    @Bean(destroyMethod = "close")
+    public FuenteJwks fuenteJwks(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:${spring.security.oauth2.resourceserver.jwt.issuer-uri}/protocol/openid-connect/certs}") String jwkSetUri,
+            @Value("${seguridad.jwt.jwks-local:#{null}}") Resource jwksLocal,
+            @Value("${seguridad.jwt.intervalo-refresco-jwks:10m}") Duration intervaloRefresco) {
+        return new FuenteJwks(jwksLocal, jwkSetUri, intervaloRefresco);
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(
+            FuenteJwks fuenteJwks,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer,
+            @Value("${seguridad.jwt.cache.tamanio-maximo:10000}") long tamanioMaximo,
+            @Value("${seguridad.jwt.cache.vida-maxima:1h}") Duration vidaMaxima) {
+        DefaultJWTProcessor<SecurityContext> procesador = new DefaultJWTProcessor<>();
+        procesador.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, fuenteJwks));
+        // Las claims las valida Spring (exp, nbf, iss), igual que NimbusJwtDecoder.withJwkSetUri
+        procesador.setJWTClaimsSetVerifier((claims, contexto) -> {
+        });
+
+        NimbusJwtDecoder verificador = new NimbusJwtDecoder(procesador);
+        verificador.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        return new DecodificadorJwtCacheado(verificador, tamanioMaximo, vidaMaxima);
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.proyectofinal.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mide cada método público de ProductoService como productos.servicio{operation, outcome}.
+ * Se ordena por fuera de la cache y de la transacción para que el tiempo incluya aciertos
+ * de cache y el commit. Las consultas de los repositorios ya las mide Spring Data
+ * (spring.data.repository.invocations) y el pool, Hikari (hikaricp.connections.*).
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class MetricasServiciosAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(public * org.example.proyectofinal.services.ProductoService.*(..))")
+    public Object medir(ProceedingJoinPoint punto) throws Throwable {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String resultado = "SUCCESS";
+        try {
+            return punto.proceed();
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            resultado = "CLIENT_ERROR";
+            throw ex;
+        } catch (Throwable ex) {
+            resultado = "SERVER_ERROR";
+            throw ex;
+        } finally {
+            muestra.stop(Timer.builder("productos.servicio")
+                    .description("Duración de las operaciones de ProductoService")
+                    .tag("operation", punto.getSignature().getName())
+                    .tag("outcome", resultado)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.proyectofinal.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.utils.DataSourceEnrutado;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Réplica de lectura opcional: solo se activa si se configura datasource.replica.jdbc-url.
+ * La primaria se sigue configurando con spring.datasource.* y la réplica con datasource.replica.*
+ * (propiedades de Hikari). Las transacciones readOnly van a la réplica salvo en la ventana de
+ * lectura propia de quien acaba de escribir; ver {@link DataSourceEnrutado}.
+ * <p>
+ * Nada leído de la réplica llega a las caches compartidas: las cargas de las caches de Spring van
+ * a la primaria (CargaCachePrimariaAspect) y las sesiones que leen de la réplica consultan la
+ * cache de segundo nivel pero no la llenan.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replica.jdbc-url")
+public class ReplicaLecturaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrimaria(DataSourceProperties propiedades) {
+        HikariDataSource dataSource = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primaria");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica")
+    public HikariDataSource dataSourceReplica() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    // Se inyectan como DataSource: con hilos virtuales HilosVirtualesConfig los envuelve en DataSourceLimitado
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("dataSourcePrimaria") DataSource primaria,
+                                 @Qualifier("dataSourceReplica") DataSource replica,
+                                 @Value("${datasource.replica.ventana-lectura-propia:5s}") Duration ventanaLecturaPropia,
+                                 ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        DataSourceEnrutado enrutado = new DataSourceEnrutado(primaria, replica, ventanaLecturaPropia);
+        enrutado.setAlUsarReplica(() -> sinLlenarCacheSegundoNivel(entityManagerFactory.getIfAvailable()));
+        enrutado.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(enrutado);
+    }
+
+    // CacheMode.GET solo hasta el final de la transacción: con open-in-view la sesión sigue en la petición
+    private static void sinLlenarCacheSegundoNivel(EntityManagerFactory entityManagerFactory) {
+        if (entityManagerFactory == null || !TransactionSynchronizationManager.isSynchronizationActive()
+                || !(TransactionSynchronizationManager.getResource(entityManagerFactory) instanceof EntityManagerHolder holder)) {
+            return;
+        }
+        Session sesion = holder.getEntityManager().unwrap(Session.class);
+        CacheMode anterior = sesion.getCacheMode();
+        if (anterior == CacheMode.GET) {
+            return;
+        }
+        sesion.setCacheMode(CacheMode.GET);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                sesion.setCacheMode(anterior);
+            }
+        });
+    }
+
+    // Con open-in-view la sesión dura toda la petición; sin esto retendría la conexión de la primera
+    // transacción (p. ej. la de la réplica) y la reutilizaría para una escritura posterior
+    @Bean
+    public HibernatePropertiesCustomizer liberarConexionTrasTransaccion() {
+        return propiedades -> propiedades.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
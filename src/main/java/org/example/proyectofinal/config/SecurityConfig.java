@@ -68,18 +68,24 @@ public class SecurityConfig {
                 // Endpoints públicos
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
+                .requestMatchers("/actuator/health/**").permitAll()
+                // Incluye /actuator/prometheus: el scraper se autentica con un token de una cuenta de servicio con ADMIN
+                .requestMatchers("/actuator/**").hasAuthority("ADMIN")
                 .requestMatchers(HttpMethod.GET, "/api/productos/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll() // Allow OPTIONS requests for CORS
                 // Endpoints con roles
                 .requestMatchers(HttpMethod.POST, "/api/productos").hasAnyAuthority("ADMIN", "EMPLEADO")
                 .requestMatchers(HttpMethod.PUT, "/api/productos/**").hasAnyAuthority("ADMIN", "EMPLEADO")
+                .requestMatchers(HttpMethod.PATCH, "/api/productos/**").hasAnyAuthority("ADMIN", "EMPLEADO")
                 .requestMatchers(HttpMethod.DELETE, "/api/productos/**").hasAuthority("ADMIN")
 
 
                 // Api integration
                 .requestMatchers(HttpMethod.GET, "/api/integration/productos/**").permitAll()
                 .requestMatchers(HttpMethod.POST, "/api/integration/productos").hasAuthority("ADMIN")
+                .requestMatchers(HttpMethod.POST, "/api/integration/productos/batch").hasAuthority("ADMIN")
                 .requestMatchers(HttpMethod.PUT, "/api/integration/productos/**").hasAnyAuthority("ADMIN", "EMPLEADO")
+                .requestMatchers(HttpMethod.PATCH, "/api/integration/productos/**").hasAnyAuthority("ADMIN", "EMPLEADO")
                 .requestMatchers(HttpMethod.DELETE, "/api/integration/productos/**").hasAuthority("ADMIN")
 
                 .anyRequest().authenticated()
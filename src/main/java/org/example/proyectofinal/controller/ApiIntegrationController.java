@@ -1,15 +1,21 @@
 package org.example.proyectofinal.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.dto.ResultadoLote;
 import org.example.proyectofinal.entities.Producto;
 import org.example.proyectofinal.services.ProductoService;
+import org.example.proyectofinal.services.RegistroIdempotencia;
+import org.example.proyectofinal.services.VersionesProductos;
+import org.example.proyectofinal.utils.EtagUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/integration/productos")
@@ -18,10 +24,21 @@ import java.util.List;
 public class ApiIntegrationController {
 
     private final ProductoService productoService;
+    private final VersionesProductos versionesProductos;
+    private final RegistroIdempotencia registroIdempotencia;
 
+    // Las escrituras aceptan Idempotency-Key: un reintento con la misma clave devuelve la respuesta original
     @PostMapping
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<?> crearProducto(@RequestBody Producto producto) {
+    public ResponseEntity<?> crearProducto(
+            @RequestBody Producto producto,
+            @RequestHeader(value = RegistroIdempotencia.CABECERA, required = false) String claveIdempotencia,
+            Principal principal) {
+        return registroIdempotencia.ejecutar(claveIdempotencia, ambito(principal, "crear"), String.valueOf(producto),
+                () -> crear(producto));
+    }
+
+    private ResponseEntity<?> crear(Producto producto) {
         if (producto.getNombre() == null || producto.getNombre().isEmpty()) {
             return ResponseEntity.badRequest().body("El nombre es obligatorio");
         }
@@ -31,6 +48,9 @@ public class ApiIntegrationController {
         if (producto.getCantidadInicial() < 0) {
             return ResponseEntity.badRequest().body("La cantidad inicial no puede ser negativa");
         }
+        if (producto.getStockMinimo() != null && producto.getStockMinimo() < 0) {
+            return ResponseEntity.badRequest().body("El stock mínimo no puede ser negativo");
+        }
 
         try {
             Producto nuevoProducto = productoService.crearProducto(producto);
@@ -40,15 +60,55 @@ public class ApiIntegrationController {
         }
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<?> crearProductosEnLote(
+            @RequestBody List<Producto> productos,
+            @RequestHeader(value = RegistroIdempotencia.CABECERA, required = false) String claveIdempotencia,
+            Principal principal) {
+        return registroIdempotencia.ejecutar(claveIdempotencia, ambito(principal, "lote"), String.valueOf(productos),
+                () -> crearLote(productos, principal));
+    }
+
+    private ResponseEntity<?> crearLote(List<Producto> productos, Principal principal) {
+        if (productos == null || productos.isEmpty()) {
+            return ResponseEntity.badRequest().body("El lote no puede estar vacío");
+        }
+        try {
+            String usuario = principal != null ? principal.getName() : "Sistema";
+            List<ResultadoLote> resultados = productoService.crearProductosEnLote(productos, usuario);
+            return ResponseEntity.ok(resultados);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            // Carrera con otra petición sobre el mismo nombre: el lote se deshizo entero y puede reintentarse
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
 
+    // Por defecto pagina por cursor; el listado completo solo se devuelve con completo=true.
+    // Con If-None-Match igual a la versión del catálogo responde 304 sin consultar la base de datos
     @GetMapping("/listar")
-    public ResponseEntity<List<Producto>> listarProductos() {
-        return ResponseEntity.ok(productoService.listarProductos());
+    public ResponseEntity<?> listarProductos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) List<String> campos,
+            @RequestParam(defaultValue = "false") boolean completo,
+            WebRequest peticion) {
+        String etag = versionesProductos.etagCatalogo();
+        if (completo) {
+            return EtagUtils.responder(peticion, etag, productoService::listarProductos);
+        }
+        try {
+            return EtagUtils.responder(peticion, etag, () -> productoService.listarProductosPaginado(cursor, size, campos));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> obtenerProductoPorId(@PathVariable Long id) {
-        return ResponseEntity.ok(productoService.obtenerProductoPorId(id));
+    public ResponseEntity<Producto> obtenerProductoPorId(@PathVariable Long id, WebRequest peticion) {
+        return EtagUtils.responder(peticion, versionesProductos.etagProducto(id), () -> productoService.obtenerProductoPorId(id));
     }
 
 //    @PutMapping("/{id}")
@@ -60,31 +120,88 @@ public class ApiIntegrationController {
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
-    public ResponseEntity<Producto> actualizarCantidadProducto(
+    public ResponseEntity<?> actualizarCantidadProducto(
             @PathVariable Long id,
             @RequestParam int nuevaCantidad,
             @RequestParam String tipo,    // "ENTRADA" o "SALIDA"
             @RequestParam String motivo,
+            @RequestHeader(value = RegistroIdempotencia.CABECERA, required = false) String claveIdempotencia,
             Principal principal
     ) {
         String usuario = principal.getName(); // obtiene el username del token
-        Producto actualizado = productoService.actualizarCantidad(id, nuevaCantidad, tipo, motivo, usuario);
-        return ResponseEntity.ok(actualizado);
+        return registroIdempotencia.ejecutar(claveIdempotencia, ambito(principal, "cantidad"),
+                String.join("|", id.toString(), Integer.toString(nuevaCantidad), tipo, motivo),
+                () -> ResponseEntity.ok(productoService.actualizarCantidad(id, nuevaCantidad, tipo, motivo, usuario)));
+    }
+
+    @PatchMapping("/{id}/cantidad")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public ResponseEntity<?> ajustarCantidadProducto(
+            @PathVariable Long id,
+            @RequestParam int delta,    // positivo = ENTRADA, negativo = SALIDA
+            @RequestParam(defaultValue = "Ajuste de stock") String motivo,
+            @RequestHeader(value = RegistroIdempotencia.CABECERA, required = false) String claveIdempotencia,
+            Principal principal
+    ) {
+        return registroIdempotencia.ejecutar(claveIdempotencia, ambito(principal, "ajuste"),
+                String.join("|", id.toString(), Integer.toString(delta), motivo),
+                () -> ajustarCantidad(id, delta, motivo, principal));
+    }
+
+    private ResponseEntity<?> ajustarCantidad(Long id, int delta, String motivo, Principal principal) {
+        try {
+            String usuario = principal != null ? principal.getName() : "Sistema";
+            return ResponseEntity.ok(productoService.ajustarCantidad(id, delta, motivo, usuario));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
     }
 
+    // modo=diferido oculta el producto al instante y purga su historial en segundo plano
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<String> eliminarProducto(@PathVariable Long id) {
-        return productoService.eliminarProducto(id);
+    public ResponseEntity<String> eliminarProducto(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "inmediato") String modo) {
+        ProductoService.ModoEliminacion modoEliminacion;
+        try {
+            modoEliminacion = ProductoService.ModoEliminacion.desde(modo);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+        return productoService.eliminarProducto(id, modoEliminacion);
+    }
+
+    @DeleteMapping("/batch")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<?> eliminarProductos(
+            @RequestParam List<Long> ids,
+            @RequestParam(defaultValue = "inmediato") String modo) {
+        try {
+            int eliminados = productoService.eliminarProductos(ids, ProductoService.ModoEliminacion.desde(modo));
+            return ResponseEntity.ok(Map.of("solicitados", ids.size(), "eliminados", eliminados));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
     }
 
     @GetMapping("/buscar/nombre")
-    public ResponseEntity<List<Producto>> buscarProductosPorNombre(@RequestParam String nombre) {
-        return ResponseEntity.ok(productoService.buscarProductosPorNombre(nombre));
+    public ResponseEntity<List<Producto>> buscarProductosPorNombre(
+            @RequestParam String nombre,
+            @RequestParam(defaultValue = "100") int limite) {
+        return ResponseEntity.ok(productoService.buscarProductosPorNombre(nombre, limite));
     }
 
     @GetMapping("/buscar/categoria")
-    public ResponseEntity<List<Producto>> buscarProductosPorCategoria(@RequestParam String categoria) {
-        return ResponseEntity.ok(productoService.buscarProductosPorCategoria(categoria));
+    public ResponseEntity<List<Producto>> buscarProductosPorCategoria(
+            @RequestParam String categoria,
+            @RequestParam(defaultValue = "100") int limite) {
+        return ResponseEntity.ok(productoService.buscarProductosPorCategoria(categoria, limite));
+    }
+
+    private static String ambito(Principal principal, String operacion) {
+        return (principal != null ? principal.getName() : "anonimo") + "|" + operacion;
     }
 }
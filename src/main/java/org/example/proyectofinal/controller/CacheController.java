@@ -0,0 +1,42 @@
+package org.example.proyectofinal.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final CacheManager cacheManager;
+
+    @GetMapping
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Map<String, Map<String, Object>> obtenerEstadisticas() {
+        Map<String, Map<String, Object>> resultado = new LinkedHashMap<>();
+        for (String nombre : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(nombre) instanceof CaffeineCache cache) {
+                CacheStats stats = cache.getNativeCache().stats();
+                Map<String, Object> valores = new LinkedHashMap<>();
+                valores.put("tamanio", cache.getNativeCache().estimatedSize());
+                valores.put("aciertos", stats.hitCount());
+                valores.put("fallos", stats.missCount());
+                valores.put("tasaAciertos", stats.hitRate());
+                valores.put("desalojos", stats.evictionCount());
+                valores.put("cargas", stats.loadCount());
+                valores.put("tiempoMedioCargaNanos", stats.averageLoadPenalty());
+                resultado.put(nombre, valores);
+            }
+        }
+        return resultado;
+    }
+}
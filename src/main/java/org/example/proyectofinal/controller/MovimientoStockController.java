@@ -1,14 +1,23 @@
 package org.example.proyectofinal.controller;
 import lombok.RequiredArgsConstructor;
-import org.example.proyectofinal.entities.Movimiento;
-import org.example.proyectofinal.repositories.MovimientoRepository;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.example.proyectofinal.dto.FiltroMovimientos;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.dto.PaginaCursor;
+import org.example.proyectofinal.services.DifusorMovimientos;
+import org.example.proyectofinal.services.MovimientoExportService;
+import org.example.proyectofinal.services.MovimientoHistorialService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/movimientos")
@@ -16,31 +25,93 @@ import java.util.List;
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
 public class MovimientoStockController {
 
-    private final MovimientoRepository movimientoStockRepository;
+    private final MovimientoHistorialService movimientoHistorialService;
+    private final MovimientoExportService movimientoExportService;
+    private final DifusorMovimientos difusorMovimientos;
 
+    // Todos los listados paginan por cursor (fecha_movimiento, id) descendente.
+    // incluirArchivados=true añade los meses ya archivados en ficheros (más lento: los recorre en disco)
     @GetMapping("/{productoId}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
-    public List<Movimiento> getHistorial(@PathVariable Long productoId) {
-        return movimientoStockRepository.findByProducto_IdOrderByFechaMovimientoDesc(productoId);
+    public ResponseEntity<?> getHistorial(
+            @PathVariable Long productoId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean incluirArchivados) {
+        return pagina(() -> movimientoHistorialService.listarPorProducto(productoId, cursor, size, incluirArchivados));
     }
 
     @GetMapping
-    public Page<Movimiento> getHistorialCompleto(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size) {
-        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("fechaMovimiento").descending());
-        return movimientoStockRepository.findAllByOrderByFechaMovimientoDesc(pageRequest);
+    public ResponseEntity<?> getHistorialCompleto(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean incluirArchivados) {
+        return pagina(() -> movimientoHistorialService.listar(cursor, size, incluirArchivados));
     }
 
     @GetMapping("/usuario/{usuario}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
-    public List<Movimiento> getHistorialPorUsuario(@PathVariable String usuario) {
-        return movimientoStockRepository.findByUsuarioOrderByFechaMovimientoDesc(usuario);
+    public ResponseEntity<?> getHistorialPorUsuario(
+            @PathVariable String usuario,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean incluirArchivados) {
+        return pagina(() -> movimientoHistorialService.listarPorUsuario(usuario, cursor, size, incluirArchivados));
     }
 
     @GetMapping("/tipo/{tipo}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
-    public List<Movimiento> getHistorialPorTipo(@PathVariable String tipo) {
-        return movimientoStockRepository.findByTipoOrderByFechaMovimientoDesc(tipo);
+    public ResponseEntity<?> getHistorialPorTipo(
+            @PathVariable String tipo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean incluirArchivados) {
+        return pagina(() -> movimientoHistorialService.listarPorTipo(tipo, cursor, size, incluirArchivados));
+    }
+
+    // Cambios en vivo (SSE); al reconectar, el navegador o el cliente envía Last-Event-ID y recibe lo que se perdió
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String ultimoEventoId) {
+        return difusorMovimientos.suscribir(ultimoEventoId);
+    }
+
+    // El tipo del cuerpo tiene que ser StreamingResponseBody (no ResponseEntity<?>) para que Spring
+    // lo escriba en streaming en vez de buscar un converter
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public ResponseEntity<StreamingResponseBody> exportarHistorial(
+            @RequestParam(defaultValue = "ndjson") String formato,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(required = false) String usuario,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        MovimientoExportService.Formato formatoExportacion;
+        try {
+            formatoExportacion = MovimientoExportService.Formato.desde(formato);
+        } catch (IllegalArgumentException ex) {
+            String mensaje = ex.getMessage();
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(salida -> salida.write(mensaje.getBytes(StandardCharsets.UTF_8)));
+        }
+        FiltroMovimientos filtro = new FiltroMovimientos(productoId, usuario, tipo, desde, hasta);
+        StreamingResponseBody cuerpo = salida -> movimientoExportService.exportar(filtro, formatoExportacion, salida);
+
+        boolean csv = formatoExportacion == MovimientoExportService.Formato.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"movimientos." + (csv ? "csv" : "ndjson") + "\"")
+                .body(cuerpo);
+    }
+
+    private ResponseEntity<?> pagina(Supplier<PaginaCursor<MovimientoResumen>> consulta) {
+        try {
+            return ResponseEntity.ok(consulta.get());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
     }
 }
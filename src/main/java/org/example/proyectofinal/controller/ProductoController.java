@@ -1,21 +1,29 @@
 package org.example.proyectofinal.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.dto.ProductoBajoStock;
 import org.example.proyectofinal.entities.Movimiento;
 import org.example.proyectofinal.entities.Producto;
 import org.example.proyectofinal.entities.TipoMovimiento;
 import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.services.AlertasStockBajo;
+import org.example.proyectofinal.services.ConciliacionStockService;
 import org.example.proyectofinal.services.ProductoService;
+import org.example.proyectofinal.services.VersionesProductos;
+import org.example.proyectofinal.utils.EtagUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -24,6 +32,9 @@ import java.util.List;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final VersionesProductos versionesProductos;
+    private final ConciliacionStockService conciliacionStockService;
+    private final AlertasStockBajo alertasStockBajo;
 
     @PostMapping
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
@@ -37,6 +48,9 @@ public class ProductoController {
         if (producto.getCantidadInicial() < 0) {
             return ResponseEntity.badRequest().body("La cantidad inicial no puede ser negativa");
         }
+        if (producto.getStockMinimo() != null && producto.getStockMinimo() < 0) {
+            return ResponseEntity.badRequest().body("El stock mínimo no puede ser negativo");
+        }
 
         try {
             String usuario = principal != null ? principal.getName() : "Sistema";
@@ -48,14 +62,37 @@ public class ProductoController {
     }
 
 
+    // Por defecto pagina por cursor; el listado completo solo se devuelve con completo=true.
+    // Con If-None-Match igual a la versión del catálogo responde 304 sin consultar la base de datos
     @GetMapping("/listar")
-    public ResponseEntity<List<Producto>> listarProductos() {
-        return ResponseEntity.ok(productoService.listarProductos());
+    public ResponseEntity<?> listarProductos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) List<String> campos,
+            @RequestParam(defaultValue = "false") boolean completo,
+            WebRequest peticion) {
+        String etag = versionesProductos.etagCatalogo();
+        if (completo) {
+            return EtagUtils.responder(peticion, etag, productoService::listarProductos);
+        }
+        try {
+            return EtagUtils.responder(peticion, etag, () -> productoService.listarProductosPaginado(cursor, size, campos));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    // Productos con menos stock que su stockMinimo, desde memoria y sin consultar la base de datos.
+    // Los cruces del umbral llegan en vivo como eventos "stock-bajo"/"stock-repuesto" de /api/movimientos/stream
+    @GetMapping("/bajo-stock")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public ResponseEntity<List<ProductoBajoStock>> listarBajoStock() {
+        return ResponseEntity.ok(alertasStockBajo.listar());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> obtenerProductoPorId(@PathVariable Long id) {
-        return ResponseEntity.ok(productoService.obtenerProductoPorId(id));
+    public ResponseEntity<Producto> obtenerProductoPorId(@PathVariable Long id, WebRequest peticion) {
+        return EtagUtils.responder(peticion, versionesProductos.etagProducto(id), () -> productoService.obtenerProductoPorId(id));
     }
 
 //        @PutMapping("/{id}")
@@ -66,9 +103,18 @@ public class ProductoController {
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
-    public ResponseEntity<Producto> actualizarProducto(@PathVariable Long id, @RequestBody Producto productoActualizado, Principal principal) {
+    public ResponseEntity<?> actualizarProducto(@PathVariable Long id, @RequestBody Producto productoActualizado, Principal principal) {
+        // Sin stockMinimo en el cuerpo se conserva el actual
+        if (productoActualizado.getStockMinimo() != null && productoActualizado.getStockMinimo() < 0) {
+            return ResponseEntity.badRequest().body("El stock mínimo no puede ser negativo");
+        }
         String usuario = principal != null ? principal.getName() : "Sistema";
-        return ResponseEntity.ok(productoService.actualizarProducto(id, productoActualizado, usuario));
+        try {
+            return ResponseEntity.ok(productoService.actualizarProducto(id, productoActualizado, usuario));
+        } catch (IllegalArgumentException ex) {
+            // Nombre ya usado por otro producto
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
     }
 
     @PutMapping("/{id}/cantidad")
@@ -84,20 +130,82 @@ public class ProductoController {
         Producto actualizado = productoService.actualizarCantidad(id, nuevaCantidad, tipo, motivo, usuario);
         return ResponseEntity.ok(actualizado);
     }
+
+    @PatchMapping("/{id}/cantidad")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public ResponseEntity<?> ajustarCantidadProducto(
+            @PathVariable Long id,
+            @RequestParam int delta,    // positivo = ENTRADA, negativo = SALIDA
+            @RequestParam(defaultValue = "Ajuste de stock") String motivo,
+            Principal principal
+    ) {
+        try {
+            String usuario = principal != null ? principal.getName() : "Sistema";
+            return ResponseEntity.ok(productoService.ajustarCantidad(id, delta, motivo, usuario));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
+
+    // Recuento físico en un solo envío (CSV con cabecera o NDJSON): el stock de cada producto
+    // pasa a lo contado y se registra la diferencia como ENTRADA o SALIDA
+    @PostMapping("/conciliacion")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('EMPLEADO')")
+    public ResponseEntity<?> conciliarInventario(
+            @RequestParam(defaultValue = "csv") String formato,
+            InputStream cuerpo,
+            Principal principal) {
+        try {
+            ConciliacionStockService.Formato formatoConteo = ConciliacionStockService.Formato.desde(formato);
+            String usuario = principal != null ? principal.getName() : "Sistema";
+            return ResponseEntity.ok(conciliacionStockService.conciliar(cuerpo, formatoConteo, usuario));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    // modo=diferido oculta el producto al instante y purga su historial en segundo plano
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<String> eliminarProducto(@PathVariable Long id) {
-        return productoService.eliminarProducto(id);
+    public ResponseEntity<String> eliminarProducto(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "inmediato") String modo) {
+        ProductoService.ModoEliminacion modoEliminacion;
+        try {
+            modoEliminacion = ProductoService.ModoEliminacion.desde(modo);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+        return productoService.eliminarProducto(id, modoEliminacion);
+    }
+
+    @DeleteMapping("/lote")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<?> eliminarProductos(
+            @RequestParam List<Long> ids,
+            @RequestParam(defaultValue = "inmediato") String modo) {
+        try {
+            int eliminados = productoService.eliminarProductos(ids, ProductoService.ModoEliminacion.desde(modo));
+            return ResponseEntity.ok(Map.of("solicitados", ids.size(), "eliminados", eliminados));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
     }
 
     @GetMapping("/buscar/nombre")
-    public ResponseEntity<List<Producto>> buscarProductosPorNombre(@RequestParam String nombre) {
-        return ResponseEntity.ok(productoService.buscarProductosPorNombre(nombre));
+    public ResponseEntity<List<Producto>> buscarProductosPorNombre(
+            @RequestParam String nombre,
+            @RequestParam(defaultValue = "100") int limite) {
+        return ResponseEntity.ok(productoService.buscarProductosPorNombre(nombre, limite));
     }
 
     @GetMapping("/buscar/categoria")
-    public ResponseEntity<List<Producto>> buscarProductosPorCategoria(@RequestParam String categoria) {
-        return ResponseEntity.ok(productoService.buscarProductosPorCategoria(categoria));
+    public ResponseEntity<List<Producto>> buscarProductosPorCategoria(
+            @RequestParam String categoria,
+            @RequestParam(defaultValue = "100") int limite) {
+        return ResponseEntity.ok(productoService.buscarProductosPorCategoria(categoria, limite));
     }
 
 
@@ -0,0 +1,55 @@
+package org.example.proyectofinal.controller;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.config.CargaConfig;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emite tokens con la misma forma que los de Keycloak (realm_access.roles, preferred_username)
+ * para las pruebas de carga. Solo existe con el perfil "carga".
+ */
+@RestController
+@RequestMapping("/api/auth/token-carga")
+@Profile(CargaConfig.PERFIL)
+@RequiredArgsConstructor
+public class TokenCargaController {
+
+    private static final Duration VIGENCIA = Duration.ofHours(2);
+
+    private final SecretKey claveTokensCarga;
+
+    @PostMapping
+    public Map<String, Object> emitirToken(
+            @RequestParam(defaultValue = "carga") String usuario,
+            @RequestParam(defaultValue = "ADMIN,EMPLEADO") List<String> roles) throws JOSEException {
+        Instant ahora = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(CargaConfig.ISSUER)
+                .subject(usuario)
+                .issueTime(Date.from(ahora))
+                .expirationTime(Date.from(ahora.plus(VIGENCIA)))
+                .claim("preferred_username", usuario)
+                .claim("realm_access", Map.of("roles", roles))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        jwt.sign(new MACSigner(claveTokensCarga));
+        return Map.of("token", jwt.serialize(), "expiraEn", VIGENCIA.toSeconds());
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.proyectofinal.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtros opcionales sobre el historial de movimientos. Los campos null no filtran.
+ */
+public record FiltroMovimientos(
+        Long productoId,
+        String usuario,
+        String tipo,
+        LocalDateTime desde,
+        LocalDateTime hasta
+) {
+}
@@ -0,0 +1,35 @@
+package org.example.proyectofinal.dto;
+
+import org.example.proyectofinal.entities.Movimiento;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vista plana de un movimiento, sin la entidad Producto anidada.
+ */
+public record MovimientoResumen(
+        Long id,
+        Long productoId,
+        String productoNombre,
+        String productoCategoria,
+        String usuario,
+        String tipo,
+        int cantidad,
+        String motivo,
+        LocalDateTime fechaMovimiento
+) {
+
+    public static MovimientoResumen de(Movimiento movimiento) {
+        return new MovimientoResumen(
+                movimiento.getId(),
+                movimiento.getProducto().getId(),
+                movimiento.getProducto().getNombre(),
+                movimiento.getProducto().getCategoria(),
+                movimiento.getUsuario(),
+                movimiento.getTipo(),
+                movimiento.getCantidad(),
+                movimiento.getMotivo(),
+                movimiento.getFechaMovimiento()
+        );
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.proyectofinal.dto;
+
+import java.util.List;
+
+/**
+ * Página de resultados obtenida por cursor. {@code siguienteCursor} es null
+ * cuando no quedan más elementos.
+ */
+public record PaginaCursor<T>(
+        List<T> contenido,
+        int tamanio,
+        String siguienteCursor
+) {
+}
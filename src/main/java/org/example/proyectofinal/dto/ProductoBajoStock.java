@@ -0,0 +1,30 @@
+package org.example.proyectofinal.dto;
+
+import org.example.proyectofinal.entities.Producto;
+
+/**
+ * Stock de un producto frente a su stock mínimo, tal como lo guarda AlertasStockBajo y como se
+ * envía en los eventos de cruce del umbral.
+ */
+public record ProductoBajoStock(
+        Long id,
+        String nombre,
+        String categoria,
+        int cantidad,
+        int stockMinimo
+) {
+
+    public static ProductoBajoStock de(Producto producto) {
+        return new ProductoBajoStock(
+                producto.getId(),
+                producto.getNombre(),
+                producto.getCategoria(),
+                producto.getCantidadInicial(),
+                producto.getStockMinimo()
+        );
+    }
+
+    public boolean bajoStock() {
+        return cantidad < stockMinimo;
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.proyectofinal.dto;
+
+/**
+ * Resultado de un elemento dentro de una creación de productos en lote.
+ * {@code indice} es la posición del producto en la petición original.
+ */
+public record ResultadoLote(
+        int indice,
+        String nombre,
+        String estado,
+        Long id,
+        String error
+) {
+
+    public static final String CREADO = "CREADO";
+    public static final String RECHAZADO = "RECHAZADO";
+
+    public static ResultadoLote creado(int indice, String nombre, Long id) {
+        return new ResultadoLote(indice, nombre, CREADO, id, null);
+    }
+
+    public static ResultadoLote rechazado(int indice, String nombre, String error) {
+        return new ResultadoLote(indice, nombre, RECHAZADO, null, error);
+    }
+}
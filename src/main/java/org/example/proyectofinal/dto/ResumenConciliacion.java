@@ -0,0 +1,24 @@
+package org.example.proyectofinal.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una conciliación de inventario. {@code rechazados} cuenta todas las líneas
+ * rechazadas; {@code rechazos} solo detalla las primeras hasta el máximo configurado.
+ */
+public record ResumenConciliacion(
+        int lineas,
+        int ajustados,
+        int sinCambios,
+        int rechazados,
+        int entradas,
+        int salidas,
+        List<LineaRechazada> rechazos
+) {
+
+    /**
+     * @param linea número de línea en el fichero recibido, empezando en 1
+     */
+    public record LineaRechazada(int linea, String error) {
+    }
+}
@@ -5,10 +5,20 @@ import jakarta.persistence.*;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDateTime;
 
 @Entity
+// Índices compuestos para la paginación por (fecha_movimiento, id) del historial (ver V5).
+// En PostgreSQL la tabla está particionada por mes de fecha_movimiento (V8, ArchivadorMovimientos)
+@Table(indexes = {
+        @Index(name = "idx_movimiento_fecha_id", columnList = "fecha_movimiento DESC, id DESC"),
+        @Index(name = "idx_movimiento_producto_fecha", columnList = "producto_id, fecha_movimiento DESC, id DESC"),
+        @Index(name = "idx_movimiento_usuario_fecha", columnList = "usuario, fecha_movimiento DESC, id DESC"),
+        @Index(name = "idx_movimiento_tipo_fecha", columnList = "tipo, fecha_movimiento DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,10 +26,13 @@ import java.time.LocalDateTime;
 public class Movimiento {
 
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimiento_seq")
+        @SequenceGenerator(name = "movimiento_seq", sequenceName = "movimiento_seq", allocationSize = 50)
         private Long id;
 
         @ManyToOne(optional = false)
+        // Igual que la FK de V3: borrar el producto borra su historial en la propia base de datos
+        @OnDelete(action = OnDeleteAction.CASCADE)
         private Producto producto;
 
         private String usuario; // nombre del usuario que hizo el cambio
@@ -1,22 +1,48 @@
 package org.example.proyectofinal.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.util.Locale;
 
 @Entity
+// La unicidad del nombre la garantiza la base de datos (ver V7); ProductoService traduce la violación a 409
+@Table(uniqueConstraints = @UniqueConstraint(name = Producto.RESTRICCION_NOMBRE, columnNames = "nombre_normalizado"))
+// Los productos con borrado lógico no se ven en ninguna lectura JPA; PurgaProductosService los elimina después
+@SQLRestriction("eliminado = false")
+// Cache de segundo nivel: los borrados masivos (marcarEliminados, eliminarPorIds) invalidan la región entera;
+// el resto de escrituras solo tocan la entrada de su producto (ajustarCantidad la quita a mano tras su UPDATE JDBC)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "producto")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Producto {
 
+    public static final String RESTRICCION_NOMBRE = "uk_producto_nombre_normalizado";
+    // Mismo valor por defecto que la columna en V1
+    public static final int STOCK_MINIMO_POR_DEFECTO = 5;
+
     @Id
-    @GeneratedValue(strategy = jakarta.persistence.GenerationType.IDENTITY)
+    // Secuencia con asignación por bloques para permitir inserciones JDBC en lote
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "producto_seq")
+    @SequenceGenerator(name = "producto_seq", sequenceName = "producto_seq", allocationSize = 50)
     public Long id;
     public String nombre;
     public String descripcion;
@@ -24,4 +50,32 @@ public class Producto {
     public double precio;
     public int cantidadInicial;
 
+    // Por debajo de este stock el producto aparece en /bajo-stock (ver AlertasStockBajo). Null solo en el
+    // cuerpo de una petición que no lo envía: un alta toma el valor por defecto y una actualización conserva el actual
+    @Column(nullable = false)
+    public Integer stockMinimo;
+
+    @JsonIgnore
+    @Builder.Default
+    @Column(nullable = false)
+    public boolean eliminado = false;
+
+    // Nombre sin espacios en los extremos y en minúsculas: "Laptop" y " laptop" chocan en el índice único
+    @JsonIgnore
+    @Column(name = "nombre_normalizado", nullable = false)
+    public String nombreNormalizado;
+
+    public static String normalizarNombre(String nombre) {
+        return nombre == null ? null : nombre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void antesDeGuardar() {
+        nombreNormalizado = normalizarNombre(nombre);
+        if (stockMinimo == null) {
+            stockMinimo = STOCK_MINIMO_POR_DEFECTO;
+        }
+    }
+
 }
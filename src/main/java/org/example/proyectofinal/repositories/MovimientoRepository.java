@@ -1,17 +1,31 @@
 package org.example.proyectofinal.repositories;
 
+import org.example.proyectofinal.dto.MovimientoResumen;
 import org.example.proyectofinal.entities.Movimiento;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MovimientoRepository extends JpaRepository<Movimiento, Long> {
+    // Proyección plana con el producto resuelto por JOIN en la misma consulta
+    String SELECT_RESUMEN = "SELECT new org.example.proyectofinal.dto.MovimientoResumen(" +
+            "m.id, p.id, p.nombre, p.categoria, m.usuario, m.tipo, m.cantidad, m.motivo, m.fechaMovimiento) " +
+            "FROM Movimiento m JOIN m.producto p ";
+    // Filas estrictamente posteriores al cursor (fecha, id) en orden descendente.
+    // La primera condición acota el rango para que el índice (…, fecha_movimiento DESC, id DESC) lo recorra directamente.
+    String ANTES_DE = "m.fechaMovimiento <= :fecha AND (m.fechaMovimiento < :fecha OR m.id < :id) ";
+    String ORDEN_HISTORIAL = "ORDER BY m.fechaMovimiento DESC, m.id DESC";
+
     List<Movimiento> findByProducto_IdOrderByFechaMovimientoDesc(Long productoId);
 
     List<Movimiento> findByUsuarioOrderByFechaMovimientoDesc(String usuario);
@@ -29,4 +43,31 @@ public interface MovimientoRepository extends JpaRepository<Movimiento, Long> {
     List<Movimiento> findAllWithProductoOrderByFechaMovimientoDesc();
 
     void deleteAllByProductoId(Long id);
+
+    // Una sola sentencia DELETE, sin cargar las entidades
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Movimiento m WHERE m.producto.id IN :productoIds")
+    int eliminarPorProductoIds(@Param("productoIds") Collection<Long> productoIds);
+
+    // Borra como mucho :limite movimientos del producto, para purgar historiales grandes en transacciones cortas
+    @Modifying
+    @Query(value = "DELETE FROM movimiento WHERE id IN " +
+            "(SELECT id FROM movimiento WHERE producto_id = :productoId LIMIT :limite)", nativeQuery = true)
+    int purgarBloquePorProductoId(@Param("productoId") Long productoId, @Param("limite") int limite);
+
+    @Query(SELECT_RESUMEN + "WHERE " + ANTES_DE + ORDEN_HISTORIAL)
+    List<MovimientoResumen> findResumenAntesDe(
+            @Param("fecha") LocalDateTime fecha, @Param("id") Long id, Limit limit);
+
+    @Query(SELECT_RESUMEN + "WHERE p.id = :productoId AND " + ANTES_DE + ORDEN_HISTORIAL)
+    List<MovimientoResumen> findResumenByProductoIdAntesDe(
+            @Param("productoId") Long productoId, @Param("fecha") LocalDateTime fecha, @Param("id") Long id, Limit limit);
+
+    @Query(SELECT_RESUMEN + "WHERE m.usuario = :usuario AND " + ANTES_DE + ORDEN_HISTORIAL)
+    List<MovimientoResumen> findResumenByUsuarioAntesDe(
+            @Param("usuario") String usuario, @Param("fecha") LocalDateTime fecha, @Param("id") Long id, Limit limit);
+
+    @Query(SELECT_RESUMEN + "WHERE m.tipo = :tipo AND " + ANTES_DE + ORDEN_HISTORIAL)
+    List<MovimientoResumen> findResumenByTipoAntesDe(
+            @Param("tipo") String tipo, @Param("fecha") LocalDateTime fecha, @Param("id") Long id, Limit limit);
 }
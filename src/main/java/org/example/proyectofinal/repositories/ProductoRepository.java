@@ -1,14 +1,69 @@
 package org.example.proyectofinal.repositories;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.proyectofinal.dto.ProductoBajoStock;
 import org.example.proyectofinal.entities.Producto;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
     List<Producto> findByNombreContainingIgnoreCase(String nombre);
-    List<Producto> findByCategoriaContainingIgnoreCase(String categoria);
-    boolean existsByNombre(String nombre);
+    List<Producto> findByNombreContainingIgnoreCase(String nombre, Limit limit);
+    // Búsqueda por categoría sin el índice en memoria: resultado en la cache de consultas de Hibernate,
+    // que se invalida con cualquier escritura en producto
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Producto> findByCategoriaContainingIgnoreCase(String categoria, Limit limit);
+
+    // Nativa para incluir productos con borrado lógico pendientes de purga.
+    // Recibe y devuelve nombres ya normalizados (Producto.normalizarNombre), la clave del índice único
+    @Query(value = "SELECT nombre_normalizado FROM producto WHERE nombre_normalizado IN (:nombres)", nativeQuery = true)
+    List<String> findNombresNormalizadosExistentes(@Param("nombres") Collection<String> nombres);
+
+    /**
+     * Productos de un bloque de conciliación, por id o por nombre normalizado, bloqueados hasta el
+     * commit. El orden por id evita interbloqueos entre conciliaciones simultáneas.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Producto p WHERE p.id IN :ids OR p.nombreNormalizado IN :nombres ORDER BY p.id")
+    List<Producto> findParaConciliar(@Param("ids") Collection<Long> ids, @Param("nombres") Collection<String> nombres);
+
+    // Carga inicial de AlertasStockBajo; después el conjunto se mantiene con cada escritura de stock
+    @Query("SELECT new org.example.proyectofinal.dto.ProductoBajoStock(p.id, p.nombre, p.categoria, p.cantidadInicial, p.stockMinimo) " +
+            "FROM Producto p WHERE p.cantidadInicial < p.stockMinimo")
+    List<ProductoBajoStock> findBajoStock();
+
+    // Paginación por clave: siguiente bloque de productos a partir del último id visto
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Marca productos como eliminados sin tocar su historial
+     * @return cantidad de productos marcados
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Producto p SET p.eliminado = true WHERE p.id IN :ids AND p.eliminado = false")
+    int marcarEliminados(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Producto p WHERE p.id IN :ids")
+    int eliminarPorIds(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT id FROM producto WHERE eliminado = true ORDER BY id LIMIT :limite", nativeQuery = true)
+    List<Long> findIdsEliminados(@Param("limite") int limite);
+
+    // Borrado físico de un producto ya marcado, una vez purgado su historial
+    @Modifying
+    @Query(value = "DELETE FROM producto WHERE id = :id AND eliminado = true", nativeQuery = true)
+    int purgarEliminado(@Param("id") Long id);
 }
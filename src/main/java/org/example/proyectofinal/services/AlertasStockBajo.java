@@ -0,0 +1,133 @@
+package org.example.proyectofinal.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.dto.ProductoBajoStock;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Productos con menos stock que su stock mínimo, guardados en memoria por id. Se cargan al
+ * arrancar con una consulta y después no se vuelve a recorrer la tabla: cada escritura de stock
+ * (ProductoService y la conciliación) evalúa solo los productos que cambió, tras el commit.
+ * Cuando un producto cruza el umbral se publica "stock-bajo" o "stock-repuesto" en el flujo de
+ * DifusorMovimientos. Como el resto del estado en memoria, cada instancia tiene el suyo.
+ * <p>
+ * Los callbacks de commits distintos pueden ejecutarse en cualquier orden, así que cada estado
+ * lleva una secuencia tomada con la fila ya bloqueada por la escritura (UPDATE hecho o SELECT
+ * FOR UPDATE): para un mismo producto ese orden es el de los commits. Un estado con una secuencia
+ * anterior a la ya aplicada para el producto se descarta.
+ */
+@Slf4j
+@Component
+public class AlertasStockBajo {
+
+    private final ProductoRepository productoRepository;
+    private final DifusorMovimientos difusor;
+    private final Map<Long, ProductoBajoStock> bajoStock = new ConcurrentSkipListMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    // Última secuencia aplicada de cada producto, también de los que salieron de la lista. Solo se
+    // necesita mientras pueda quedar pendiente un callback anterior, por eso caduca
+    private final Cache<Long, Long> aplicadas = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+    // Estados tomados antes de la última reconstrucción; ya están reflejados en la carga
+    private long piso;
+
+    public AlertasStockBajo(ProductoRepository productoRepository,
+                            DifusorMovimientos difusor,
+                            MeterRegistry meterRegistry) {
+        this.productoRepository = productoRepository;
+        this.difusor = difusor;
+        Gauge.builder("productos.stock.bajo", bajoStock, Map::size)
+                .description("Productos con stock por debajo de su stock mínimo")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        piso = secuencia.incrementAndGet();
+        aplicadas.invalidateAll();
+        bajoStock.clear();
+        productoRepository.findBajoStock().forEach(producto -> bajoStock.put(producto.id(), producto));
+        log.info("{} productos por debajo de su stock mínimo", bajoStock.size());
+    }
+
+    /**
+     * Evalúa el umbral de los productos con sus valores actuales cuando la transacción actual
+     * confirme (o ya, si no hay ninguna). Quien llama ya debe tener bloqueadas sus filas.
+     */
+    public void evaluar(Collection<Producto> productos) {
+        long orden = secuencia.incrementAndGet();
+        List<ProductoBajoStock> estados = productos.stream().map(ProductoBajoStock::de).toList();
+        TransaccionUtils.despuesDelCommit(() -> aplicar(estados, orden));
+    }
+
+    public void evaluar(Producto producto) {
+        evaluar(List.of(producto));
+    }
+
+    // Productos eliminados: dejan de estar en la lista sin publicar un cruce
+    public void quitar(Collection<Long> ids) {
+        long orden = secuencia.incrementAndGet();
+        List<Long> copia = List.copyOf(ids);
+        TransaccionUtils.despuesDelCommit(() -> quitar(copia, orden));
+    }
+
+    /**
+     * @return productos por debajo de su stock mínimo, ordenados por id
+     */
+    public List<ProductoBajoStock> listar() {
+        return List.copyOf(bajoStock.values());
+    }
+
+    private synchronized void aplicar(List<ProductoBajoStock> estados, long orden) {
+        for (ProductoBajoStock estado : estados) {
+            if (!esPosterior(estado.id(), orden)) {
+                continue;
+            }
+            if (estado.bajoStock()) {
+                if (bajoStock.put(estado.id(), estado) == null) {
+                    difusor.publicarEvento(DifusorMovimientos.EVENTO_STOCK_BAJO, estado);
+                }
+            } else if (bajoStock.remove(estado.id()) != null) {
+                difusor.publicarEvento(DifusorMovimientos.EVENTO_STOCK_REPUESTO, estado);
+            }
+        }
+    }
+
+    private synchronized void quitar(List<Long> ids, long orden) {
+        for (Long id : ids) {
+            if (esPosterior(id, orden)) {
+                bajoStock.remove(id);
+            }
+        }
+    }
+
+    // Con el cerrojo de la instancia: registra la secuencia si es la más reciente del producto
+    private boolean esPosterior(Long id, long orden) {
+        if (orden < piso) {
+            return false;
+        }
+        Long ultima = aplicadas.getIfPresent(id);
+        if (ultima != null && ultima > orden) {
+            return false;
+        }
+        aplicadas.put(id, orden);
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.proyectofinal.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mantenimiento de la tabla movimiento particionada por mes en PostgreSQL (ver V8): crea por
+ * adelantado las particiones de los próximos meses y pasa a ficheros comprimidos
+ * (ArchivoMovimientos) las particiones más antiguas que la retención, que después se separan de
+ * la tabla y se eliminan. Con otra base de datos, o sin la tabla particionada, no hace nada.
+ * El archivado borra filas de la base, así que solo se hace si se habilita explícitamente y con
+ * un directorio configurado; la creación de particiones siempre está activa.
+ */
+@Slf4j
+@Service
+public class ArchivadorMovimientos {
+
+    private static final String PREFIJO_PARTICION = "movimiento_p";
+    private static final Pattern NOMBRE_PARTICION = Pattern.compile(PREFIJO_PARTICION + "(\\d{6})");
+    private static final DateTimeFormatter SUFIJO_PARTICION = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int FILAS_POR_LECTURA = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchivoMovimientos archivoMovimientos;
+    private final boolean habilitado;
+    private final int retencionMeses;
+    private final int mesesAdelantados;
+    private volatile Boolean tablaParticionada;
+
+    public ArchivadorMovimientos(DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 ArchivoMovimientos archivoMovimientos,
+                                 @Value("${movimientos.archivo.habilitado:false}") boolean habilitado,
+                                 @Value("${movimientos.archivo.retencion-meses:12}") int retencionMeses,
+                                 @Value("${movimientos.particiones.meses-adelantados:2}") int mesesAdelantados) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Lectura por cursor del servidor en lugar de cargar la partición entera
+        this.jdbcTemplate.setFetchSize(FILAS_POR_LECTURA);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (habilitado && !archivoMovimientos.isConfigurado()) {
+            throw new IllegalStateException("movimientos.archivo.habilitado=true requiere movimientos.archivo.directorio");
+        }
+        this.archivoMovimientos = archivoMovimientos;
+        this.habilitado = habilitado;
+        this.retencionMeses = Math.max(1, retencionMeses);
+        this.mesesAdelantados = Math.max(1, mesesAdelantados);
+    }
+
+    @Scheduled(fixedDelayString = "${movimientos.particiones.intervalo:6h}", initialDelayString = "${movimientos.particiones.retardo-inicial:1m}")
+    public void mantener() {
+        if (!tablaParticionada()) {
+            return;
+        }
+        crearParticiones();
+        if (habilitado) {
+            archivarAntiguas();
+        }
+    }
+
+    /**
+     * Crea, si no existen, las particiones del mes actual y de los siguientes. Un mes sin partición
+     * acabaría en movimiento_default, y entonces ya no se podría crear su partición.
+     */
+    public void crearParticiones() {
+        YearMonth actual = YearMonth.now();
+        for (int i = 0; i <= mesesAdelantados; i++) {
+            YearMonth mes = actual.plusMonths(i);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + particion(mes) + " PARTITION OF movimiento " +
+                        "FOR VALUES FROM ('" + mes.atDay(1) + "') TO ('" + mes.plusMonths(1).atDay(1) + "')");
+            } catch (DataAccessException ex) {
+                log.warn("No se pudo crear la partición de movimientos de {}: {}", mes, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Archiva y elimina las particiones de meses anteriores a la retención, de la más antigua a la más reciente
+     * @return cantidad de particiones archivadas
+     */
+    public int archivarAntiguas() {
+        YearMonth limite = YearMonth.now().minusMonths(retencionMeses);
+        List<YearMonth> candidatas = jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                                "WHERE i.inhparent = 'movimiento'::regclass", String.class).stream()
+                .map(NOMBRE_PARTICION::matcher)
+                .filter(Matcher::matches)
+                .map(m -> YearMonth.parse(m.group(1), SUFIJO_PARTICION))
+                .filter(mes -> mes.isBefore(limite))
+                .sorted()
+                .toList();
+
+        int archivadas = 0;
+        for (YearMonth mes : candidatas) {
+            try {
+                long filas = archivar(mes);
+                log.info("Partición de movimientos de {} archivada con {} filas", mes, filas);
+                archivadas++;
+            } catch (RuntimeException ex) {
+                // Se reintenta en la siguiente ejecución programada
+                log.warn("No se pudo archivar la partición de movimientos de {}: {}", mes, ex.getMessage());
+                break;
+            }
+        }
+        return archivadas;
+    }
+
+    /**
+     * Escribe el fichero del mes y, en la misma transacción, separa y elimina su partición. Si algo
+     * falla antes del commit la partición sigue en la base y el fichero se reescribe al reintentar.
+     */
+    private long archivar(YearMonth mes) {
+        String particion = particion(mes);
+        return transactionTemplate.execute(estado -> {
+            // Sin escrituras concurrentes en la partición mientras se copia
+            jdbcTemplate.execute("LOCK TABLE " + particion + " IN SHARE MODE");
+            long esperadas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + particion, Long.class);
+            long filas;
+            try {
+                filas = archivoMovimientos.archivar(mes, destino -> jdbcTemplate.query(
+                        "SELECT m.id, m.producto_id, p.nombre, p.categoria, m.usuario, m.tipo, m.cantidad, m.motivo, " +
+                                "m.fecha_movimiento FROM " + particion + " m JOIN producto p ON p.id = m.producto_id " +
+                                "ORDER BY m.fecha_movimiento DESC, m.id DESC",
+                        (RowCallbackHandler) rs -> {
+                            destino.accept(new MovimientoResumen(
+                                    rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                                    rs.getString(6), rs.getInt(7), rs.getString(8),
+                                    rs.getTimestamp(9).toLocalDateTime()));
+                        }));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (filas != esperadas) {
+                throw new IllegalStateException("Se archivaron " + filas + " filas de " + esperadas);
+            }
+            jdbcTemplate.execute("ALTER TABLE movimiento DETACH PARTITION " + particion);
+            jdbcTemplate.execute("DROP TABLE " + particion);
+            return filas;
+        });
+    }
+
+    private boolean tablaParticionada() {
+        if (tablaParticionada == null) {
+            tablaParticionada = jdbcTemplate.execute((ConnectionCallback<Boolean>) conexion ->
+                    "PostgreSQL".equals(conexion.getMetaData().getDatabaseProductName()))
+                    && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('movimiento'))",
+                    Boolean.class));
+        }
+        return tablaParticionada;
+    }
+
+    private static String particion(YearMonth mes) {
+        return PREFIJO_PARTICION + mes.format(SUFIJO_PARTICION);
+    }
+}
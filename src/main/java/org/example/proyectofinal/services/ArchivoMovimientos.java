@@ -0,0 +1,153 @@
+package org.example.proyectofinal.services;
+
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.utils.FormatoColumnarMovimientos;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Ficheros locales con el historial de movimientos ya sacado de la base de datos, uno por mes
+ * (movimientos-AAAA-MM.mcol.gz, ver FormatoColumnarMovimientos). Cada fichero guarda sus filas
+ * por (fecha_movimiento, id) descendente, igual que el historial paginado, para poder dejar de
+ * leer en cuanto se completa una página. Sin movimientos.archivo.directorio no hay archivo: no
+ * se escribe nada y las búsquedas no devuelven filas.
+ */
+@Component
+public class ArchivoMovimientos {
+
+    private static final Pattern NOMBRE_FICHERO = Pattern.compile("movimientos-(\\d{4}-\\d{2})\\.mcol\\.gz");
+
+    // null si no se ha configurado
+    private final Path directorio;
+
+    public ArchivoMovimientos(@Value("${movimientos.archivo.directorio:}") String directorio) {
+        this.directorio = directorio.isBlank() ? null : Path.of(directorio);
+    }
+
+    public boolean isConfigurado() {
+        return directorio != null;
+    }
+
+    /**
+     * Escribe el fichero de un mes. Se escribe a un temporal que se sincroniza a disco y se
+     * renombra al final, así un fichero visible siempre está completo.
+     * @param volcado recibe el consumidor al que pasar las filas, en orden (fecha, id) descendente
+     * @return cantidad de filas escritas
+     */
+    public long archivar(YearMonth mes, Consumer<Consumer<MovimientoResumen>> volcado) throws IOException {
+        if (directorio == null) {
+            throw new IllegalStateException("No hay directorio de archivo configurado (movimientos.archivo.directorio)");
+        }
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempFile(directorio, "movimientos-" + mes, ".tmp");
+        try {
+            long filas;
+            try (FormatoColumnarMovimientos.Escritor escritor =
+                         new FormatoColumnarMovimientos.Escritor(Files.newOutputStream(temporal))) {
+                volcado.accept(movimiento -> {
+                    try {
+                        escritor.escribir(movimiento);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                filas = escritor.filas();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                canal.force(true);
+            }
+            Files.move(temporal, fichero(mes), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return filas;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * @return meses archivados, del más reciente al más antiguo
+     */
+    public List<YearMonth> meses() {
+        if (directorio == null || !Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            return ficheros.map(f -> NOMBRE_FICHERO.matcher(f.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> YearMonth.parse(m.group(1)))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Busca en los ficheros las filas anteriores al cursor (fecha, id), en orden descendente
+     * @param filtro condición que deben cumplir las filas
+     * @param cota si no es null, se deja de leer al llegar a filas con fecha anterior a esta
+     * @param limite cantidad máxima de filas a devolver
+     */
+    public List<MovimientoResumen> buscarAntesDe(Predicate<MovimientoResumen> filtro, LocalDateTime fecha, long id,
+                                                 LocalDateTime cota, int limite) {
+        List<MovimientoResumen> encontrados = new ArrayList<>();
+        for (YearMonth mes : meses()) {
+            if (mes.atDay(1).atStartOfDay().isAfter(fecha)) {
+                // Todo el mes es posterior al cursor
+                continue;
+            }
+            if (cota != null && !mes.plusMonths(1).atDay(1).atStartOfDay().isAfter(cota)) {
+                break;
+            }
+            try (InputStream entrada = Files.newInputStream(fichero(mes));
+                 FormatoColumnarMovimientos.Lector lector = new FormatoColumnarMovimientos.Lector(entrada)) {
+                List<MovimientoResumen> grupo;
+                while ((grupo = lector.siguienteGrupo()) != null) {
+                    for (MovimientoResumen movimiento : grupo) {
+                        if (cota != null && movimiento.fechaMovimiento().isBefore(cota)) {
+                            return encontrados;
+                        }
+                        if (esAnterior(movimiento, fecha, id) && filtro.test(movimiento)) {
+                            encontrados.add(movimiento);
+                            if (encontrados.size() == limite) {
+                                return encontrados;
+                            }
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("No se pudo leer el archivo de movimientos de " + mes, ex);
+            }
+        }
+        return encontrados;
+    }
+
+    private Path fichero(YearMonth mes) {
+        return directorio.resolve("movimientos-" + mes + ".mcol.gz");
+    }
+
+    private static boolean esAnterior(MovimientoResumen movimiento, LocalDateTime fecha, long id) {
+        int comparacion = movimiento.fechaMovimiento().compareTo(fecha);
+        return comparacion < 0 || (comparacion == 0 && movimiento.id() < id);
+    }
+}
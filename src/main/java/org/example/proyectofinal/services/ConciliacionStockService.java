@@ -0,0 +1,353 @@
+package org.example.proyectofinal.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.dto.ResumenConciliacion;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Conciliación tras un recuento físico: recibe en streaming las cantidades contadas (CSV o NDJSON)
+ * y deja el stock de cada producto en lo contado. Las líneas se procesan por bloques, cada uno en
+ * su transacción: una consulta bloquea los productos del bloque, las diferencias se calculan en
+ * memoria y las actualizaciones y los movimientos ENTRADA/SALIDA se envían en lotes JDBC al hacer
+ * flush. Un bloque que falla se revierte entero y sus líneas se devuelven como rechazadas; los
+ * bloques ya confirmados se mantienen.
+ */
+@Slf4j
+@Service
+public class ConciliacionStockService {
+
+    public static final String MOTIVO = "Conciliación de inventario";
+    private static final String COLUMNA_ID = "productoId";
+    private static final String COLUMNA_NOMBRE = "nombre";
+    private static final String COLUMNA_CANTIDAD = "cantidadContada";
+
+    public enum Formato {
+        CSV, NDJSON;
+
+        public static Formato desde(String valor) {
+            try {
+                return Formato.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Formato de conciliación no soportado: " + valor);
+            }
+        }
+    }
+
+    // Una línea de NDJSON; en CSV las columnas llevan los mismos nombres
+    private record LineaConteo(Long productoId, String nombre, Integer cantidadContada) {
+    }
+
+    private record Conteo(int linea, Long productoId, String nombreNormalizado, int cantidad) {
+    }
+
+    private final ProductoRepository productoRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final RegistroMovimientos registroMovimientos;
+    private final DifusorMovimientos difusorMovimientos;
+    private final VersionesProductos versiones;
+    private final AlertasStockBajo alertasStockBajo;
+    private final int tamanioBloque;
+    private final int rechazosMaximos;
+
+    public ConciliacionStockService(ProductoRepository productoRepository,
+                                    EntityManager entityManager,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    RegistroMovimientos registroMovimientos,
+                                    DifusorMovimientos difusorMovimientos,
+                                    VersionesProductos versiones,
+                                    AlertasStockBajo alertasStockBajo,
+                                    @Value("${productos.conciliacion.tamanio-bloque:500}") int tamanioBloque,
+                                    @Value("${productos.conciliacion.rechazos-maximos:1000}") int rechazosMaximos) {
+        this.productoRepository = productoRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.registroMovimientos = registroMovimientos;
+        this.difusorMovimientos = difusorMovimientos;
+        this.versiones = versiones;
+        this.alertasStockBajo = alertasStockBajo;
+        this.tamanioBloque = tamanioBloque;
+        this.rechazosMaximos = rechazosMaximos;
+    }
+
+    /**
+     * Aplica el conteo leído de {@code entrada}. Cada producto se identifica por productoId o, si
+     * no viene, por nombre (sin distinguir mayúsculas). El CSV necesita cabecera con las columnas
+     * productoId, nombre y cantidadContada, en cualquier orden; productoId o nombre pueden omitirse.
+     * @throws IllegalArgumentException si el CSV no tiene una cabecera válida
+     */
+    public ResumenConciliacion conciliar(InputStream entrada, Formato formato, String usuario) {
+        Acumulado acumulado = new Acumulado();
+        // Un producto contado dos veces se aplica solo la primera, aunque las líneas caigan en bloques distintos
+        Set<Long> procesados = new HashSet<>();
+        List<Conteo> bloque = new ArrayList<>(tamanioBloque);
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columnas = null;
+            String texto;
+            int numero = 0;
+            while ((texto = lector.readLine()) != null) {
+                numero++;
+                if (texto.isBlank()) {
+                    continue;
+                }
+                if (formato == Formato.CSV && columnas == null) {
+                    columnas = leerCabecera(texto);
+                    continue;
+                }
+                acumulado.lineas++;
+                try {
+                    bloque.add(formato == Formato.CSV ? desdeCsv(numero, texto, columnas) : desdeNdjson(numero, texto));
+                } catch (IllegalArgumentException ex) {
+                    acumulado.rechazar(numero, ex.getMessage());
+                    continue;
+                }
+                if (bloque.size() == tamanioBloque) {
+                    aplicarBloque(bloque, usuario, procesados, acumulado);
+                    bloque.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (!bloque.isEmpty()) {
+            aplicarBloque(bloque, usuario, procesados, acumulado);
+        }
+        return acumulado.resumen();
+    }
+
+    private void aplicarBloque(List<Conteo> bloque, String usuario, Set<Long> procesados, Acumulado acumulado) {
+        Acumulado parcial = new Acumulado();
+        Set<Long> procesadosBloque = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> aplicar(bloque, usuario, procesados, procesadosBloque, parcial));
+        } catch (DataAccessException | PersistenceException | TransactionException ex) {
+            // Por ejemplo, un bloqueo que no se obtuvo a tiempo o una fila rechazada en el flush (que llega
+            // sin traducir desde el EntityManager): el bloque no se aplicó y puede reenviarse
+            log.warn("Bloque de conciliación revertido: {}", ex.getMessage());
+            bloque.forEach(conteo -> acumulado.rechazar(conteo.linea(), "Bloque no aplicado por un error de base de datos; reintente"));
+            return;
+        }
+        procesados.addAll(procesadosBloque);
+        acumulado.sumar(parcial);
+    }
+
+    // Dentro de la transacción del bloque
+    private void aplicar(List<Conteo> bloque, String usuario, Set<Long> procesados,
+                               Set<Long> procesadosBloque, Acumulado parcial) {
+        Set<Long> ids = new HashSet<>();
+        Set<String> nombres = new HashSet<>();
+        for (Conteo conteo : bloque) {
+            if (conteo.productoId() != null) {
+                ids.add(conteo.productoId());
+            } else {
+                nombres.add(conteo.nombreNormalizado());
+            }
+        }
+        Map<Long, Producto> porId = new HashMap<>();
+        Map<String, Producto> porNombre = new HashMap<>();
+        for (Producto producto : productoRepository.findParaConciliar(ids, nombres)) {
+            porId.put(producto.getId(), producto);
+            porNombre.put(producto.getNombreNormalizado(), producto);
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Movimiento> movimientos = new ArrayList<>();
+        List<Producto> productosCambiados = new ArrayList<>();
+        for (Conteo conteo : bloque) {
+            Producto producto = conteo.productoId() != null ? porId.get(conteo.productoId()) : porNombre.get(conteo.nombreNormalizado());
+            if (producto == null) {
+                parcial.rechazar(conteo.linea(), "Producto no encontrado");
+                continue;
+            }
+            if (procesados.contains(producto.getId()) || !procesadosBloque.add(producto.getId())) {
+                parcial.rechazar(conteo.linea(), "Producto ya contado en una línea anterior");
+                continue;
+            }
+            int diferencia = conteo.cantidad() - producto.getCantidadInicial();
+            if (diferencia == 0) {
+                parcial.sinCambios++;
+                continue;
+            }
+            // Entidad gestionada: el cambio sale en el flush como UPDATE agrupado en lote JDBC
+            producto.setCantidadInicial(conteo.cantidad());
+            String tipo = diferencia > 0 ? "ENTRADA" : "SALIDA";
+            movimientos.add(Movimiento.builder()
+                    .producto(producto)
+                    .usuario(usuario)
+                    .tipo(tipo)
+                    .cantidad(Math.abs(diferencia))
+                    .motivo(MOTIVO)
+                    .fechaMovimiento(ahora)
+                    .build());
+            productosCambiados.add(producto);
+            parcial.ajustados++;
+            if (diferencia > 0) {
+                parcial.entradas++;
+            } else {
+                parcial.salidas++;
+            }
+        }
+
+        movimientos.forEach(entityManager::persist);
+        difusorMovimientos.publicarDespuesDelCommit(movimientos);
+        alertasStockBajo.evaluar(productosCambiados);
+        entityManager.flush();
+        entityManager.clear();
+        if (!productosCambiados.isEmpty()) {
+            // Tras el commit invalida las caches de productos y después publica los ETags nuevos
+            versiones.registrarCambio(productosCambiados.stream().map(Producto::getId).toList());
+        }
+        registroMovimientos.contabilizar("ENTRADA", parcial.entradas);
+        registroMovimientos.contabilizar("SALIDA", parcial.salidas);
+    }
+
+    private Conteo desdeNdjson(int numero, String texto) {
+        LineaConteo linea;
+        try {
+            linea = objectMapper.readValue(texto, LineaConteo.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("JSON inválido");
+        }
+        return validar(numero, linea);
+    }
+
+    private static Conteo desdeCsv(int numero, String texto, Map<String, Integer> columnas) {
+        List<String> valores = dividirCsv(texto);
+        String id = valor(valores, columnas.get(COLUMNA_ID));
+        String cantidad = valor(valores, columnas.get(COLUMNA_CANTIDAD));
+        try {
+            return validar(numero, new LineaConteo(
+                    id == null ? null : Long.valueOf(id),
+                    valor(valores, columnas.get(COLUMNA_NOMBRE)),
+                    cantidad == null ? null : Integer.valueOf(cantidad)));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("productoId y cantidadContada deben ser números enteros");
+        }
+    }
+
+    private static Conteo validar(int numero, LineaConteo linea) {
+        if (linea.cantidadContada() == null) {
+            throw new IllegalArgumentException("Falta cantidadContada");
+        }
+        if (linea.cantidadContada() < 0) {
+            throw new IllegalArgumentException("La cantidad contada no puede ser negativa");
+        }
+        if (linea.productoId() == null && (linea.nombre() == null || linea.nombre().isBlank())) {
+            throw new IllegalArgumentException("Falta productoId o nombre");
+        }
+        String nombre = linea.productoId() == null ? Producto.normalizarNombre(linea.nombre()) : null;
+        return new Conteo(numero, linea.productoId(), nombre, linea.cantidadContada());
+    }
+
+    private static Map<String, Integer> leerCabecera(String texto) {
+        Map<String, Integer> columnas = new HashMap<>();
+        List<String> nombres = dividirCsv(texto);
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(nombres.get(i).trim(), i);
+        }
+        if (!columnas.containsKey(COLUMNA_CANTIDAD) || (!columnas.containsKey(COLUMNA_ID) && !columnas.containsKey(COLUMNA_NOMBRE))) {
+            throw new IllegalArgumentException("La cabecera CSV debe incluir cantidadContada y productoId o nombre");
+        }
+        return columnas;
+    }
+
+    private static String valor(List<String> valores, Integer columna) {
+        if (columna == null || columna >= valores.size()) {
+            return null;
+        }
+        String valor = valores.get(columna).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    // Campos separados por comas; entre comillas dobles pueden llevar comas y "" como comilla
+    private static List<String> dividirCsv(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    private final class Acumulado {
+        private int lineas;
+        private int ajustados;
+        private int sinCambios;
+        private int entradas;
+        private int salidas;
+        private int rechazados;
+        private final List<ResumenConciliacion.LineaRechazada> rechazos = new ArrayList<>();
+
+        private void rechazar(int linea, String error) {
+            rechazados++;
+            if (rechazos.size() < rechazosMaximos) {
+                rechazos.add(new ResumenConciliacion.LineaRechazada(linea, error));
+            }
+        }
+
+        private void sumar(Acumulado otro) {
+            ajustados += otro.ajustados;
+            sinCambios += otro.sinCambios;
+            entradas += otro.entradas;
+            salidas += otro.salidas;
+            otro.rechazos.forEach(rechazo -> rechazar(rechazo.linea(), rechazo.error()));
+            rechazados += otro.rechazados - otro.rechazos.size();
+        }
+
+        private ResumenConciliacion resumen() {
+            rechazos.sort((a, b) -> Integer.compare(a.linea(), b.linea()));
+            return new ResumenConciliacion(lineas, ajustados, sinCambios, rechazados, entradas, salidas, List.copyOf(rechazos));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.proyectofinal.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Difunde por SSE los movimientos confirmados a los clientes de /api/movimientos/stream, sin
+ * consultar la base de datos. Cada evento recibe un id "generación-secuencia" y los últimos se
+ * guardan en un buffer para que un cliente que reconecta con Last-Event-ID reciba lo que se
+ * perdió. Si ese id ya no está en el buffer (o es de otro arranque) se le envía un evento
+ * "reinicio" para que recargue el historial por REST. Por el mismo flujo salen los cruces del
+ * stock mínimo ("stock-bajo" y "stock-repuesto", ver AlertasStockBajo).
+ * <p>
+ * Publicar nunca bloquea: cada suscriptor tiene su cola acotada y un envío en curso como mucho,
+ * en un hilo virtual. Si la cola de un suscriptor lento se llena se cierra su conexión y al
+ * reconectar se pone al día con el buffer. Un suscriptor inactivo no ocupa ningún hilo.
+ */
+@Slf4j
+@Component
+public class DifusorMovimientos {
+
+    public static final String EVENTO_MOVIMIENTO = "movimiento";
+    public static final String EVENTO_REINICIO = "reinicio";
+    public static final String EVENTO_STOCK_BAJO = "stock-bajo";
+    public static final String EVENTO_STOCK_REPUESTO = "stock-repuesto";
+
+    private record Evento(long secuencia, String id, String nombre, Object datos) {
+    }
+
+    private final String generacion = Long.toString(System.currentTimeMillis(), 36);
+    private final Deque<Evento> buffer = new ArrayDeque<>();
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final ExecutorService envios = Executors.newVirtualThreadPerTaskExecutor();
+    private final int tamanioBuffer;
+    private final int capacidadCola;
+    private final long tiempoConexion;
+    private long secuencia;
+
+    public DifusorMovimientos(MeterRegistry meterRegistry,
+                              @Value("${movimientos.stream.tamanio-buffer:1000}") int tamanioBuffer,
+                              @Value("${movimientos.stream.capacidad-cola:256}") int capacidadCola,
+                              @Value("${movimientos.stream.tiempo-conexion:30m}") Duration tiempoConexion) {
+        this.tamanioBuffer = tamanioBuffer;
+        this.capacidadCola = capacidadCola;
+        this.tiempoConexion = tiempoConexion.toMillis();
+        Gauge.builder("movimientos.stream.suscriptores", suscriptores, Set::size)
+                .description("Clientes conectados a /api/movimientos/stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publica los movimientos cuando la transacción actual confirme (o ya, si no hay ninguna).
+     * El resumen se construye ahora, mientras el producto sigue asociado a la sesión.
+     */
+    public void publicarDespuesDelCommit(Collection<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) {
+            return;
+        }
+        List<MovimientoResumen> resumenes = movimientos.stream().map(MovimientoResumen::de).toList();
+        TransaccionUtils.despuesDelCommit(() -> publicar(resumenes));
+    }
+
+    public void publicarDespuesDelCommit(Movimiento movimiento) {
+        publicarDespuesDelCommit(List.of(movimiento));
+    }
+
+    /**
+     * Registra un suscriptor. Con Last-Event-ID recibe primero los eventos posteriores del buffer.
+     */
+    public SseEmitter suscribir(String ultimoEventoId) {
+        SseEmitter emisor = new SseEmitter(tiempoConexion);
+        Suscriptor suscriptor = new Suscriptor(emisor);
+        emisor.onCompletion(() -> suscriptores.remove(suscriptor));
+        emisor.onTimeout(emisor::complete);
+        emisor.onError(error -> suscriptores.remove(suscriptor));
+
+        // Bajo el mismo cerrojo que publicar: ni huecos ni duplicados entre el buffer y los eventos nuevos
+        synchronized (buffer) {
+            if (ultimoEventoId != null && !ultimoEventoId.isBlank()) {
+                List<Evento> pendientes = eventosDesde(ultimoEventoId);
+                if (pendientes == null || pendientes.size() > capacidadCola) {
+                    suscriptor.ofrecer(new Evento(secuencia, generacion + "-" + secuencia, EVENTO_REINICIO, "historial incompleto"));
+                } else {
+                    pendientes.forEach(suscriptor::ofrecer);
+                }
+            }
+            suscriptores.add(suscriptor);
+        }
+        suscriptor.programarEnvio();
+        return emisor;
+    }
+
+    public int suscriptores() {
+        return suscriptores.size();
+    }
+
+    /**
+     * Publica ya un evento con otro nombre que "movimiento"; quien llama se encarga de hacerlo tras el commit
+     */
+    public void publicarEvento(String nombre, Object datos) {
+        publicar(nombre, List.of(datos));
+    }
+
+    void publicar(List<MovimientoResumen> movimientos) {
+        publicar(EVENTO_MOVIMIENTO, movimientos);
+    }
+
+    private void publicar(String nombre, List<?> eventos) {
+        List<Suscriptor> desbordados = new ArrayList<>();
+        synchronized (buffer) {
+            for (Object datos : eventos) {
+                long actual = ++secuencia;
+                Evento evento = new Evento(actual, generacion + "-" + actual, nombre, datos);
+                buffer.addLast(evento);
+                if (buffer.size() > tamanioBuffer) {
+                    buffer.removeFirst();
+                }
+                for (Suscriptor suscriptor : suscriptores) {
+                    if (!suscriptor.ofrecer(evento)) {
+                        desbordados.add(suscriptor);
+                    }
+                }
+            }
+        }
+        for (Suscriptor suscriptor : desbordados) {
+            // Al reconectar con su Last-Event-ID recupera lo perdido desde el buffer, o recibe "reinicio"
+            suscriptores.remove(suscriptor);
+            suscriptor.emisor.complete();
+        }
+        suscriptores.forEach(Suscriptor::programarEnvio);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        suscriptores.forEach(suscriptor -> suscriptor.emisor.complete());
+        suscriptores.clear();
+        envios.shutdown();
+    }
+
+    // Comentario periódico: mantiene vivas las conexiones a través de proxies y detecta clientes caídos
+    @Scheduled(fixedDelayString = "${movimientos.stream.latido:25s}")
+    public void latido() {
+        for (Suscriptor suscriptor : suscriptores) {
+            suscriptor.latidoPendiente.set(true);
+            suscriptor.programarEnvio();
+        }
+    }
+
+    // null si el id no es de esta generación o ya salió del buffer
+    private List<Evento> eventosDesde(String ultimoEventoId) {
+        int separador = ultimoEventoId.lastIndexOf('-');
+        if (separador < 0 || !ultimoEventoId.substring(0, separador).equals(generacion)) {
+            return null;
+        }
+        long ultima;
+        try {
+            ultima = Long.parseLong(ultimoEventoId.substring(separador + 1));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (ultima > secuencia) {
+            return null;
+        }
+        long primeraDisponible = buffer.isEmpty() ? secuencia + 1 : buffer.peekFirst().secuencia();
+        if (ultima + 1 < primeraDisponible) {
+            return null;
+        }
+        return buffer.stream().filter(evento -> evento.secuencia() > ultima).toList();
+    }
+
+    private final class Suscriptor {
+
+        private final SseEmitter emisor;
+        private final BlockingQueue<Evento> cola = new ArrayBlockingQueue<>(capacidadCola);
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private final AtomicBoolean latidoPendiente = new AtomicBoolean();
+
+        private Suscriptor(SseEmitter emisor) {
+            this.emisor = emisor;
+        }
+
+        private boolean ofrecer(Evento evento) {
+            return cola.offer(evento);
+        }
+
+        // Como mucho un envío en curso por suscriptor, así los eventos salen en orden
+        private void programarEnvio() {
+            if ((!cola.isEmpty() || latidoPendiente.get()) && enviando.compareAndSet(false, true)) {
+                envios.execute(this::enviar);
+            }
+        }
+
+        private void enviar() {
+            try {
+                if (latidoPendiente.getAndSet(false)) {
+                    emisor.send(SseEmitter.event().comment("latido"));
+                }
+                Evento evento;
+                while ((evento = cola.poll()) != null) {
+                    emisor.send(SseEmitter.event().id(evento.id()).name(evento.nombre()).data(evento.datos()));
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // Cliente desconectado o emisor ya completado
+                log.debug("Suscriptor de movimientos desconectado: {}", ex.getMessage());
+                suscriptores.remove(this);
+                cola.clear();
+                emisor.completeWithError(ex);
+                return;
+            } finally {
+                enviando.set(false);
+            }
+            programarEnvio();
+        }
+    }
+}
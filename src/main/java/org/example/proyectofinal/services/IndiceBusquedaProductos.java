@@ -0,0 +1,236 @@
+package org.example.proyectofinal.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Índice en memoria de n-gramas (de uno a tres caracteres) sobre el nombre y la categoría de los
+ * productos. Resuelve las búsquedas por subcadena sin recorrer la tabla: un término de uno o dos
+ * caracteres tiene su propia lista de productos, y en uno más largo se toma la lista del trigrama
+ * menos frecuente y solo se verifican esos. Se construye al arrancar (hasta entonces las búsquedas
+ * van a la base de datos) y lo mantienen al día las escrituras de ProductoService.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndiceBusquedaProductos {
+
+    private static final int TAMANIO_BLOQUE_CARGA = 1000;
+    private static final int LONGITUD_NGRAMA = 3;
+
+    private record Entrada(String nombre, String categoria) {
+    }
+
+    private record Coincidencia(Long id, int rango, int posicion, int longitud) {
+    }
+
+    private static final Comparator<Coincidencia> ORDEN_RELEVANCIA = Comparator
+            .comparingInt(Coincidencia::rango)
+            .thenComparingInt(Coincidencia::posicion)
+            .thenComparingInt(Coincidencia::longitud)
+            .thenComparingLong(Coincidencia::id);
+
+    private final ProductoRepository productoRepository;
+
+    // Con false las búsquedas vuelven a resolverse con LIKE en la base de datos
+    @Value("${productos.busqueda.indice-memoria:true}")
+    private boolean habilitado;
+
+    private final Map<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> ngramasNombre = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> ngramasCategoria = new ConcurrentHashMap<>();
+    private volatile boolean construido;
+
+    /**
+     * @return true si está habilitado y ya se construyó; si no, las búsquedas deben ir a la base de datos
+     */
+    public boolean isDisponible() {
+        return habilitado && construido;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        if (!habilitado) {
+            return;
+        }
+        construido = false;
+        entradas.clear();
+        ngramasNombre.clear();
+        ngramasCategoria.clear();
+        long ultimoId = 0L;
+        List<Producto> bloque;
+        do {
+            bloque = productoRepository.findByIdGreaterThanOrderByIdAsc(ultimoId, Limit.of(TAMANIO_BLOQUE_CARGA));
+            bloque.forEach(this::agregar);
+            if (!bloque.isEmpty()) {
+                ultimoId = bloque.get(bloque.size() - 1).getId();
+            }
+        } while (bloque.size() == TAMANIO_BLOQUE_CARGA);
+        construido = true;
+        log.info("Índice de búsqueda de productos construido con {} productos", entradas.size());
+    }
+
+    /**
+     * Agrega o reemplaza un producto en el índice. Si hay una transacción activa
+     * el cambio se aplica al confirmarse.
+     */
+    public void indexar(Producto producto) {
+        alConfirmar(() -> agregar(producto));
+    }
+
+    public void indexar(Collection<Producto> productos) {
+        List<Producto> copia = List.copyOf(productos);
+        alConfirmar(() -> copia.forEach(this::agregar));
+    }
+
+    public void eliminar(Long id) {
+        alConfirmar(() -> quitar(id));
+    }
+
+    /**
+     * @return ids de productos cuyo nombre contiene el término, ordenados por relevancia
+     */
+    public List<Long> buscarPorNombre(String termino, int limite) {
+        return buscar(termino, limite, ngramasNombre, Entrada::nombre);
+    }
+
+    /**
+     * @return ids de productos cuya categoría contiene el término, ordenados por relevancia
+     */
+    public List<Long> buscarPorCategoria(String termino, int limite) {
+        return buscar(termino, limite, ngramasCategoria, Entrada::categoria);
+    }
+
+    private List<Long> buscar(String termino, int limite, Map<String, Set<Long>> ngramas,
+                              Function<Entrada, String> campo) {
+        String normalizado = normalizar(termino);
+        if (normalizado == null || normalizado.isEmpty()) {
+            return List.of();
+        }
+
+        // Candidatos: con uno o dos caracteres, la lista del propio término (ya son todos coincidencias);
+        // con más, la lista más corta entre los trigramas del término
+        Collection<Long> candidatos = null;
+        for (String ngrama : normalizado.length() < LONGITUD_NGRAMA ? Set.of(normalizado) : trigramas(normalizado)) {
+            Set<Long> ids = ngramas.get(ngrama);
+            if (ids == null) {
+                return List.of();
+            }
+            if (candidatos == null || ids.size() < candidatos.size()) {
+                candidatos = ids;
+            }
+        }
+
+        PriorityQueue<Coincidencia> mejores = new PriorityQueue<>(ORDEN_RELEVANCIA.reversed());
+        for (Long id : candidatos) {
+            Entrada entrada = entradas.get(id);
+            String valor = entrada != null ? campo.apply(entrada) : null;
+            int posicion = valor != null ? valor.indexOf(normalizado) : -1;
+            if (posicion < 0) {
+                continue;
+            }
+            mejores.add(new Coincidencia(id, rango(valor, normalizado, posicion), posicion, valor.length()));
+            if (mejores.size() > limite) {
+                mejores.poll();
+            }
+        }
+
+        List<Coincidencia> ordenadas = new ArrayList<>(mejores);
+        ordenadas.sort(ORDEN_RELEVANCIA);
+        return ordenadas.stream().map(Coincidencia::id).toList();
+    }
+
+    // 0 = igual, 1 = empieza por el término, 2 = empieza una palabra, 3 = contiene
+    private static int rango(String valor, String termino, int posicion) {
+        if (valor.length() == termino.length()) {
+            return 0;
+        }
+        if (posicion == 0) {
+            return 1;
+        }
+        return Character.isLetterOrDigit(valor.charAt(posicion - 1)) ? 3 : 2;
+    }
+
+    private synchronized void agregar(Producto producto) {
+        quitar(producto.getId());
+        Entrada entrada = new Entrada(normalizar(producto.getNombre()), normalizar(producto.getCategoria()));
+        agregarNgramas(ngramasNombre, entrada.nombre(), producto.getId());
+        agregarNgramas(ngramasCategoria, entrada.categoria(), producto.getId());
+        entradas.put(producto.getId(), entrada);
+    }
+
+    private synchronized void quitar(Long id) {
+        Entrada anterior = entradas.remove(id);
+        if (anterior != null) {
+            quitarNgramas(ngramasNombre, anterior.nombre(), id);
+            quitarNgramas(ngramasCategoria, anterior.categoria(), id);
+        }
+    }
+
+    private static void agregarNgramas(Map<String, Set<Long>> indice, String valor, Long id) {
+        for (String ngrama : ngramas(valor)) {
+            indice.computeIfAbsent(ngrama, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private static void quitarNgramas(Map<String, Set<Long>> indice, String valor, Long id) {
+        for (String ngrama : ngramas(valor)) {
+            indice.computeIfPresent(ngrama, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static Set<String> trigramas(String valor) {
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + LONGITUD_NGRAMA <= valor.length(); i++) {
+            resultado.add(valor.substring(i, i + LONGITUD_NGRAMA));
+        }
+        return resultado;
+    }
+
+    // Todas las subcadenas de uno a tres caracteres: las de uno y dos atienden los términos cortos
+    private static Set<String> ngramas(String valor) {
+        Set<String> resultado = new HashSet<>();
+        if (valor == null) {
+            return resultado;
+        }
+        for (int i = 0; i < valor.length(); i++) {
+            for (int fin = i + 1; fin <= Math.min(i + LONGITUD_NGRAMA, valor.length()); fin++) {
+                resultado.add(valor.substring(i, fin));
+            }
+        }
+        return resultado;
+    }
+
+    private static String normalizar(String valor) {
+        return valor != null ? valor.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (habilitado) {
+            TransaccionUtils.despuesDelCommit(accion);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.example.proyectofinal.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.dto.FiltroMovimientos;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Movimiento;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Exporta el historial de movimientos leyendo la tabla por lotes con un cursor
+ * de solo avance y escribiendo cada fila directamente en la respuesta.
+ */
+@Service
+@RequiredArgsConstructor
+public class MovimientoExportService {
+
+    private static final int TAMANIO_LOTE = 500;
+    private static final String CABECERA_CSV = "id,productoId,productoNombre,productoCategoria,usuario,tipo,cantidad,motivo,fechaMovimiento";
+
+    public enum Formato {
+        NDJSON, CSV;
+
+        public static Formato desde(String valor) {
+            try {
+                return Formato.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Formato de exportación no soportado: " + valor);
+            }
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    public void exportar(FiltroMovimientos filtro, Formato formato, OutputStream salida) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            try (Stream<Movimiento> movimientos = crearConsulta(filtro).getResultStream()) {
+                if (formato == Formato.CSV) {
+                    writer.write(CABECERA_CSV);
+                    writer.write('\n');
+                }
+                int escritos = 0;
+                Iterator<Movimiento> iterator = movimientos.iterator();
+                while (iterator.hasNext()) {
+                    MovimientoResumen resumen = MovimientoResumen.de(iterator.next());
+                    writer.write(formato == Formato.CSV ? aCsv(resumen) : objectMapper.writeValueAsString(resumen));
+                    writer.write('\n');
+                    // Liberar las entidades ya escritas para que la memoria no crezca con la tabla
+                    if (++escritos % TAMANIO_LOTE == 0) {
+                        entityManager.clear();
+                        writer.flush();
+                    }
+                }
+                writer.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    private TypedQuery<Movimiento> crearConsulta(FiltroMovimientos filtro) {
+        StringBuilder jpql = new StringBuilder("SELECT m FROM Movimiento m JOIN FETCH m.producto p WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+        if (filtro.productoId() != null) {
+            jpql.append(" AND p.id = :productoId");
+            parametros.put("productoId", filtro.productoId());
+        }
+        if (filtro.usuario() != null) {
+            jpql.append(" AND m.usuario = :usuario");
+            parametros.put("usuario", filtro.usuario());
+        }
+        if (filtro.tipo() != null) {
+            jpql.append(" AND m.tipo = :tipo");
+            parametros.put("tipo", filtro.tipo());
+        }
+        if (filtro.desde() != null) {
+            jpql.append(" AND m.fechaMovimiento >= :desde");
+            parametros.put("desde", filtro.desde());
+        }
+        if (filtro.hasta() != null) {
+            jpql.append(" AND m.fechaMovimiento <= :hasta");
+            parametros.put("hasta", filtro.hasta());
+        }
+        jpql.append(" ORDER BY m.fechaMovimiento DESC, m.id DESC");
+
+        TypedQuery<Movimiento> query = entityManager.createQuery(jpql.toString(), Movimiento.class);
+        parametros.forEach(query::setParameter);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, TAMANIO_LOTE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        return query;
+    }
+
+    private static String aCsv(MovimientoResumen resumen) {
+        return String.join(",",
+                String.valueOf(resumen.id()),
+                String.valueOf(resumen.productoId()),
+                escaparCsv(resumen.productoNombre()),
+                escaparCsv(resumen.productoCategoria()),
+                escaparCsv(resumen.usuario()),
+                escaparCsv(resumen.tipo()),
+                String.valueOf(resumen.cantidad()),
+                escaparCsv(resumen.motivo()),
+                resumen.fechaMovimiento() != null ? resumen.fechaMovimiento().toString() : "");
+    }
+
+    private static String escaparCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.contains(",") || valor.contains("\"") || valor.contains("\n") || valor.contains("\r")) {
+            return "\"" + valor.replace("\"", "\"\"") + "\"";
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.proyectofinal.services;
+
+import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.dto.PaginaCursor;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.utils.CursorUtils;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Historial de movimientos paginado por clave (fecha_movimiento, id) en orden descendente.
+ * Cada página es una única consulta acotada por índice, sin OFFSET ni COUNT. Con
+ * {@code incluirArchivados} se completa además con los ficheros de ArchivoMovimientos (meses ya
+ * sacados de la base de datos), mezclando ambos orígenes en el mismo orden y con el mismo cursor.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MovimientoHistorialService {
+
+    public static final int TAMANIO_PAGINA_MAXIMO = 500;
+    private static final String CURSOR_MOVIMIENTOS = "m";
+    // Posición inicial: cualquier movimiento real es anterior a estos valores
+    private static final LocalDateTime FECHA_INICIAL = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final long ID_INICIAL = Long.MAX_VALUE;
+
+    private static final Comparator<MovimientoResumen> ORDEN_HISTORIAL = Comparator
+            .comparing(MovimientoResumen::fechaMovimiento)
+            .thenComparing(MovimientoResumen::id)
+            .reversed();
+
+    private final MovimientoRepository movimientoRepository;
+    private final ArchivoMovimientos archivoMovimientos;
+
+    public PaginaCursor<MovimientoResumen> listar(String cursor, int tamanio, boolean incluirArchivados) {
+        return paginar(cursor, tamanio, movimientoRepository::findResumenAntesDe,
+                incluirArchivados ? movimiento -> true : null);
+    }
+
+    public PaginaCursor<MovimientoResumen> listarPorProducto(Long productoId, String cursor, int tamanio,
+                                                             boolean incluirArchivados) {
+        return paginar(cursor, tamanio, (fecha, id, limite) ->
+                        movimientoRepository.findResumenByProductoIdAntesDe(productoId, fecha, id, limite),
+                incluirArchivados ? movimiento -> productoId.equals(movimiento.productoId()) : null);
+    }
+
+    public PaginaCursor<MovimientoResumen> listarPorUsuario(String usuario, String cursor, int tamanio,
+                                                            boolean incluirArchivados) {
+        return paginar(cursor, tamanio, (fecha, id, limite) ->
+                        movimientoRepository.findResumenByUsuarioAntesDe(usuario, fecha, id, limite),
+                incluirArchivados ? movimiento -> usuario.equals(movimiento.usuario()) : null);
+    }
+
+    public PaginaCursor<MovimientoResumen> listarPorTipo(String tipo, String cursor, int tamanio,
+                                                         boolean incluirArchivados) {
+        return paginar(cursor, tamanio, (fecha, id, limite) ->
+                        movimientoRepository.findResumenByTipoAntesDe(tipo, fecha, id, limite),
+                incluirArchivados ? movimiento -> tipo.equals(movimiento.tipo()) : null);
+    }
+
+    /**
+     * @param filtroArchivo condición equivalente a la consulta para las filas archivadas; null para no leerlas
+     */
+    private PaginaCursor<MovimientoResumen> paginar(String cursor, int tamanio, ConsultaPagina consulta,
+                                                    Predicate<MovimientoResumen> filtroArchivo) {
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_PAGINA_MAXIMO));
+        LocalDateTime fecha = FECHA_INICIAL;
+        long id = ID_INICIAL;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] valores = CursorUtils.decodificar(cursor, CURSOR_MOVIMIENTOS, 2);
+            try {
+                fecha = LocalDateTime.parse(valores[0]);
+                id = Long.parseLong(valores[1]);
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<MovimientoResumen> movimientos = consulta.buscar(fecha, id, Limit.of(limite + 1));
+        if (filtroArchivo != null) {
+            // Con la página ya completa en la base, solo interesan las filas archivadas que vayan antes de su última fila
+            LocalDateTime cota = movimientos.size() > limite ? movimientos.get(limite).fechaMovimiento() : null;
+            List<MovimientoResumen> archivados = archivoMovimientos.buscarAntesDe(filtroArchivo, fecha, id, cota, limite + 1);
+            if (!archivados.isEmpty()) {
+                List<MovimientoResumen> mezcla = new ArrayList<>(movimientos);
+                mezcla.addAll(archivados);
+                mezcla.sort(ORDEN_HISTORIAL);
+                movimientos = mezcla.size() > limite + 1 ? mezcla.subList(0, limite + 1) : mezcla;
+            }
+        }
+        boolean hayMas = movimientos.size() > limite;
+        if (hayMas) {
+            movimientos = movimientos.subList(0, limite);
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            MovimientoResumen ultimo = movimientos.get(movimientos.size() - 1);
+            siguienteCursor = CursorUtils.codificar(CURSOR_MOVIMIENTOS, ultimo.fechaMovimiento(), ultimo.id());
+        }
+        return new PaginaCursor<>(movimientos, limite, siguienteCursor);
+    }
+
+    @FunctionalInterface
+    private interface ConsultaPagina {
+        List<MovimientoResumen> buscar(LocalDateTime fecha, Long id, Limit limite);
+    }
+}
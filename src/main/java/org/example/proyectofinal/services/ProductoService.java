@@ -1,29 +1,97 @@
 package org.example.proyectofinal.services;
 
+import jakarta.persistence.Cache;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
 import lombok.RequiredArgsConstructor;
+import org.example.proyectofinal.config.CacheConfig;
+import org.example.proyectofinal.dto.PaginaCursor;
+import org.example.proyectofinal.dto.ResultadoLote;
 import org.example.proyectofinal.entities.Movimiento;
 import org.example.proyectofinal.entities.Producto;
 import org.example.proyectofinal.repositories.MovimientoRepository;
 import org.example.proyectofinal.repositories.ProductoRepository;
+import org.example.proyectofinal.utils.CursorUtils;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductoService {
+    public static final int TAMANIO_PAGINA_MAXIMO = 500;
+    public static final int TAMANIO_LOTE_MAXIMO = 5000;
+    // Múltiplo de hibernate.jdbc.batch_size para que cada flush envíe lotes completos
+    private static final int TAMANIO_BLOQUE_ESCRITURA = 500;
+    private static final int TAMANIO_BLOQUE_CONSULTA = 1000;
+    public static final int LIMITE_BUSQUEDA_MAXIMO = 1000;
+    private static final String CURSOR_PRODUCTOS = "p";
+
+    // Campos que el cliente puede pedir en el listado paginado
+    private static final Map<String, Function<Producto, Object>> CAMPOS_PRODUCTO = new LinkedHashMap<>();
+
+    static {
+        CAMPOS_PRODUCTO.put("id", Producto::getId);
+        CAMPOS_PRODUCTO.put("nombre", Producto::getNombre);
+        CAMPOS_PRODUCTO.put("descripcion", Producto::getDescripcion);
+        CAMPOS_PRODUCTO.put("categoria", Producto::getCategoria);
+        CAMPOS_PRODUCTO.put("precio", Producto::getPrecio);
+        CAMPOS_PRODUCTO.put("cantidadInicial", Producto::getCantidadInicial);
+        CAMPOS_PRODUCTO.put("stockMinimo", Producto::getStockMinimo);
+    }
+
+    public enum ModoEliminacion {
+        INMEDIATO, DIFERIDO;
+
+        public static ModoEliminacion desde(String valor) {
+            try {
+                return ModoEliminacion.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Modo de eliminación no soportado: " + valor);
+            }
+        }
+    }
+
     private final ProductoRepository productoRepository;
     private final MovimientoRepository movimientoRepository;
+    private final EntityManager entityManager;
+    private final IndiceBusquedaProductos indiceBusqueda;
+    private final RegistroMovimientos registroMovimientos;
+    private final VersionesProductos versiones;
+    private final DifusorMovimientos difusorMovimientos;
+    private final AlertasStockBajo alertasStockBajo;
+    private final JdbcTemplate jdbcTemplate;
 
+    // Una sola INSERT: el nombre duplicado lo rechaza el índice único, también entre peticiones simultáneas
+    @Transactional
     public Producto crearProducto(Producto producto, String usuario) {
-        if (productoRepository.existsByNombre(producto.getNombre())) {
-            throw new IllegalArgumentException("Ya existe un producto con el nombre: " + producto.getNombre());
-        }
-        Producto productoGuardado = productoRepository.save(producto);
+        Producto productoGuardado = guardarComprobandoNombre(producto);
+        indiceBusqueda.indexar(productoGuardado);
+        versiones.registrarCambio(productoGuardado.getId());
+        alertasStockBajo.evaluar(productoGuardado);
 
         // Registrar movimiento de creación
         registrarMovimiento(productoGuardado, usuario, "CREACION", productoGuardado.getCantidadInicial(),
@@ -36,31 +104,247 @@ public class ProductoService {
         return crearProducto(producto, "Sistema");
     }
 
+    /**
+     * Crea muchos productos en una sola transacción. La unicidad de nombres se comprueba
+     * con una consulta por bloque de nombres y las inserciones se envían en lotes JDBC.
+     * @return un resultado por producto recibido, en el mismo orden
+     */
+    @Transactional
+    public List<ResultadoLote> crearProductosEnLote(List<Producto> productos, String usuario) {
+        if (productos.size() > TAMANIO_LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El lote no puede superar " + TAMANIO_LOTE_MAXIMO + " productos");
+        }
+
+        ResultadoLote[] resultados = new ResultadoLote[productos.size()];
+        Set<String> nombresEnLote = new HashSet<>();
+        List<Integer> candidatos = new ArrayList<>();
+        for (int i = 0; i < productos.size(); i++) {
+            Producto producto = productos.get(i);
+            String error = validarProducto(producto);
+            if (error == null && !nombresEnLote.add(Producto.normalizarNombre(producto.getNombre()))) {
+                error = "Nombre repetido dentro del lote: " + producto.getNombre();
+            }
+            if (error != null) {
+                resultados[i] = ResultadoLote.rechazado(i, producto != null ? producto.getNombre() : null, error);
+            } else {
+                candidatos.add(i);
+            }
+        }
+
+        Set<String> existentes = new HashSet<>();
+        List<String> nombres = new ArrayList<>(nombresEnLote);
+        for (int desde = 0; desde < nombres.size(); desde += TAMANIO_BLOQUE_CONSULTA) {
+            existentes.addAll(productoRepository.findNombresNormalizadosExistentes(
+                    nombres.subList(desde, Math.min(desde + TAMANIO_BLOQUE_CONSULTA, nombres.size()))));
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Producto> creados = new ArrayList<>();
+        List<Movimiento> movimientos = new ArrayList<>();
+        int pendientes = 0;
+        for (int i : candidatos) {
+            Producto producto = productos.get(i);
+            if (existentes.contains(Producto.normalizarNombre(producto.getNombre()))) {
+                resultados[i] = ResultadoLote.rechazado(i, producto.getNombre(),
+                        "Ya existe un producto con el nombre: " + producto.getNombre());
+                continue;
+            }
+            producto.setId(null);
+            entityManager.persist(producto);
+            creados.add(producto);
+            Movimiento movimiento = Movimiento.builder()
+                    .producto(producto)
+                    .usuario(usuario)
+                    .tipo("CREACION")
+                    .cantidad(producto.getCantidadInicial())
+                    .motivo("Producto creado con stock inicial")
+                    .fechaMovimiento(ahora)
+                    .build();
+            entityManager.persist(movimiento);
+            movimientos.add(movimiento);
+            // El id ya está asignado por la secuencia aunque la fila aún no se haya insertado
+            resultados[i] = ResultadoLote.creado(i, producto.getNombre(), producto.getId());
 
+            if (++pendientes % TAMANIO_BLOQUE_ESCRITURA == 0) {
+                volcarLote();
+            }
+        }
+        volcarLote();
+        indiceBusqueda.indexar(creados);
+        versiones.registrarCambioCatalogo();
+        alertasStockBajo.evaluar(creados);
+        registroMovimientos.contabilizar("CREACION", creados.size());
+        difusorMovimientos.publicarDespuesDelCommit(movimientos);
+
+        return List.of(resultados);
+    }
+
+    // Si otra petición crea a la vez alguno de los nombres, el índice único rechaza el lote entero
+    private void volcarLote() {
+        try {
+            entityManager.flush();
+        } catch (PersistenceException ex) {
+            if (esNombreDuplicado(ex)) {
+                throw new IllegalStateException("Otra petición ha creado alguno de los nombres del lote; reintente");
+            }
+            throw ex;
+        }
+        entityManager.clear();
+    }
+
+    // Flush inmediato para que la violación salga aquí y no en el commit, donde ya no se puede traducir
+    private Producto guardarComprobandoNombre(Producto producto) {
+        try {
+            return productoRepository.saveAndFlush(producto);
+        } catch (DataIntegrityViolationException ex) {
+            if (esNombreDuplicado(ex)) {
+                throw new IllegalArgumentException("Ya existe un producto con el nombre: " + producto.getNombre());
+            }
+            throw ex;
+        }
+    }
+
+    private static boolean esNombreDuplicado(Throwable ex) {
+        for (Throwable causa = ex; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConstraintViolationException violacion && violacion.getConstraintName() != null
+                    && violacion.getConstraintName().toLowerCase(Locale.ROOT).contains(Producto.RESTRICCION_NOMBRE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String validarProducto(Producto producto) {
+        if (producto == null) {
+            return "El producto es obligatorio";
+        }
+        if (producto.getNombre() == null || producto.getNombre().isEmpty()) {
+            return "El nombre es obligatorio";
+        }
+        if (producto.getPrecio() <= 0) {
+            return "El precio debe ser mayor a cero";
+        }
+        if (producto.getCantidadInicial() < 0) {
+            return "La cantidad inicial no puede ser negativa";
+        }
+        if (producto.getStockMinimo() != null && producto.getStockMinimo() < 0) {
+            return "El stock mínimo no puede ser negativo";
+        }
+        return null;
+    }
+
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.LISTADO_PRODUCTOS, key = "{'completo', @versionesProductos.versionCatalogo()}", sync = true)
     public List<Producto> listarProductos() {
         return productoRepository.findAll();
     }
 
+    /**
+     * Lista productos por bloques ordenados por id, usando como cursor el último id visto
+     * @param cursor cursor devuelto por la página anterior, o null para la primera página
+     * @param tamanio cantidad de productos por página (se limita a {@link #TAMANIO_PAGINA_MAXIMO})
+     * @param campos campos a incluir en cada producto, o null/vacío para todos
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.LISTADO_PRODUCTOS, key = "{'pagina', #cursor, #tamanio, #campos, @versionesProductos.versionCatalogo()}", sync = true)
+    public PaginaCursor<Map<String, Object>> listarProductosPaginado(String cursor, int tamanio, List<String> campos) {
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_PAGINA_MAXIMO));
+        long ultimoId = 0L;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                ultimoId = Long.parseLong(CursorUtils.decodificar(cursor, CURSOR_PRODUCTOS, 1)[0]);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+        List<String> camposSeleccionados = validarCampos(campos);
+
+        // Se pide un elemento extra para saber si existe una página siguiente
+        List<Producto> productos = productoRepository.findByIdGreaterThanOrderByIdAsc(ultimoId, Limit.of(limite + 1));
+        boolean hayMas = productos.size() > limite;
+        if (hayMas) {
+            productos = productos.subList(0, limite);
+        }
+
+        List<Map<String, Object>> contenido = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            for (String campo : camposSeleccionados) {
+                fila.put(campo, CAMPOS_PRODUCTO.get(campo).apply(producto));
+            }
+            contenido.add(fila);
+        }
+
+        String siguienteCursor = hayMas
+                ? CursorUtils.codificar(CURSOR_PRODUCTOS, productos.get(productos.size() - 1).getId())
+                : null;
+        return new PaginaCursor<>(contenido, limite, siguienteCursor);
+    }
+
+    private List<String> validarCampos(List<String> campos) {
+        if (campos == null || campos.isEmpty()) {
+            return List.copyOf(CAMPOS_PRODUCTO.keySet());
+        }
+        List<String> resultado = new ArrayList<>();
+        for (String campo : campos) {
+            String nombreCampo = campo.trim();
+            if (!CAMPOS_PRODUCTO.containsKey(nombreCampo)) {
+                throw new IllegalArgumentException("Campo no válido: " + nombreCampo);
+            }
+            if (!resultado.contains(nombreCampo)) {
+                resultado.add(nombreCampo);
+            }
+        }
+        return resultado;
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS, key = "#id", sync = true)
     public Producto obtenerProductoPorId(Long id) {
         return productoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado con ID: " + id));
     }
 
     //filtrado
-    public List<Producto> buscarProductosPorNombre(String nombre) {
-        return productoRepository.findByNombreContainingIgnoreCase(nombre);
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.BUSQUEDA_PRODUCTOS, key = "{'nombre', #nombre, #limite, @versionesProductos.versionCatalogo()}", sync = true)
+    public List<Producto> buscarProductosPorNombre(String nombre, int limite) {
+        int maximo = Math.max(1, Math.min(limite, LIMITE_BUSQUEDA_MAXIMO));
+        if (!indiceBusqueda.isDisponible()) {
+            return productoRepository.findByNombreContainingIgnoreCase(nombre, Limit.of(maximo));
+        }
+        return cargarEnOrden(indiceBusqueda.buscarPorNombre(nombre, maximo));
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.BUSQUEDA_PRODUCTOS, key = "{'categoria', #categoria, #limite, @versionesProductos.versionCatalogo()}", sync = true)
+    public List<Producto> buscarProductosPorCategoria(String categoria, int limite) {
+        int maximo = Math.max(1, Math.min(limite, LIMITE_BUSQUEDA_MAXIMO));
+        if (!indiceBusqueda.isDisponible()) {
+            return productoRepository.findByCategoriaContainingIgnoreCase(categoria, Limit.of(maximo));
+        }
+        return cargarEnOrden(indiceBusqueda.buscarPorCategoria(categoria, maximo));
     }
 
-    public List<Producto> buscarProductosPorCategoria(String categoria) {
-        return productoRepository.findByCategoriaContainingIgnoreCase(categoria);
+    // Carga los productos del índice en una sola consulta manteniendo el orden de relevancia
+    private List<Producto> cargarEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Producto> porId = productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, Function.identity()));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).toList();
     }
 
 
+    @Transactional
     public Producto actualizarProducto(Long id, Producto productoActualizado, String usuario) {
         Producto productoExistente = obtenerProductoPorId(id);
 
         // Guardar valores anteriores para el historial
         int cantidadAnterior = productoExistente.getCantidadInicial();
+        Integer stockMinimoAnterior = productoExistente.getStockMinimo();
 
         // Actualizar campos
         productoExistente.setNombre(productoActualizado.getNombre());
@@ -68,8 +352,18 @@ public class ProductoService {
         productoExistente.setCategoria(productoActualizado.getCategoria());
         productoExistente.setPrecio(productoActualizado.getPrecio());
         productoExistente.setCantidadInicial(productoActualizado.getCantidadInicial());
+        if (productoActualizado.getStockMinimo() != null) {
+            productoExistente.setStockMinimo(productoActualizado.getStockMinimo());
+        }
 
-        Producto productoGuardado = productoRepository.save(productoExistente);
+        Producto productoGuardado = guardarComprobandoNombre(productoExistente);
+        indiceBusqueda.indexar(productoGuardado);
+        versiones.registrarCambio(id);
+        // Solo si cambió algo del umbral: entonces el flush ya hizo el UPDATE y la fila está bloqueada
+        if (productoGuardado.getCantidadInicial() != cantidadAnterior
+                || !productoGuardado.getStockMinimo().equals(stockMinimoAnterior)) {
+            alertasStockBajo.evaluar(productoGuardado);
+        }
 
         // Registrar movimiento de actualización
         String motivo = "Producto actualizado";
@@ -89,12 +383,18 @@ public class ProductoService {
         return actualizarProducto(id, productoActualizado, "Sistema");
     }
 
+    @Transactional
     public Producto actualizarCantidad(Long id, int nuevaCantidad, String tipo, String motivo, String usuario) {
         Producto producto = obtenerProductoPorId(id);
         int diferencia = nuevaCantidad - producto.getCantidadInicial();
 
         producto.setCantidadInicial(nuevaCantidad);
-        productoRepository.save(producto);
+        // Con flush para que la fila quede bloqueada antes de evaluar el umbral
+        productoRepository.saveAndFlush(producto);
+        versiones.registrarCambio(id);
+        if (diferencia != 0) {
+            alertasStockBajo.evaluar(producto);
+        }
 
         Movimiento movimiento = Movimiento.builder()
                 .producto(producto)
@@ -105,14 +405,68 @@ public class ProductoService {
                 .fechaMovimiento(LocalDateTime.now())
                 .build();
 
-        movimientoRepository.save(movimiento);
+        registroMovimientos.registrar(movimiento);
 
         return producto;
     }
 
 
+    /**
+     * Aplica un ajuste relativo de stock (+n entrada, -n salida) con un UPDATE condicional
+     * y registra el movimiento en la misma transacción. Peticiones concurrentes sobre el
+     * mismo producto no pierden actualizaciones y una salida sin stock suficiente se rechaza.
+     * @throws IllegalArgumentException si el ajuste es cero
+     * @throws IllegalStateException si el stock quedaría negativo
+     */
+    @Transactional
+    public Producto ajustarCantidad(Long id, int delta, String motivo, String usuario) {
+        if (delta == 0) {
+            throw new IllegalArgumentException("El ajuste de cantidad no puede ser cero");
+        }
+        // Por JDBC y no como UPDATE masivo de JPA, que invalidaría la región entera de la cache de segundo nivel.
+        // Va en la conexión de la transacción, pero sin el flush automático de Hibernate
+        entityManager.flush();
+        int actualizados = jdbcTemplate.update(
+                "UPDATE producto SET cantidad_inicial = cantidad_inicial + ? " +
+                        "WHERE id = ? AND eliminado = false AND cantidad_inicial + ? >= 0",
+                delta, id, delta);
+        if (actualizados == 0) {
+            if (!productoRepository.existsById(id)) {
+                throw new RuntimeException("Producto no encontrado con ID: " + id);
+            }
+            throw new IllegalStateException("Stock insuficiente para el producto con ID: " + id);
+        }
+        versiones.registrarCambio(id);
+        Producto producto = releerAjustado(id);
+        alertasStockBajo.evaluar(producto);
+        // Siempre síncrono: el movimiento forma parte de la misma transacción que el ajuste
+        registroMovimientos.registrarSincrono(
+                nuevoMovimiento(producto, usuario, delta > 0 ? "ENTRADA" : "SALIDA", Math.abs(delta), motivo));
+        return producto;
+    }
+
+    /**
+     * Producto tras el UPDATE de ajustarCantidad. Solo se quita su entrada de la cache de segundo nivel:
+     * ahora y otra vez tras el commit, por si otra transacción la volvió a cargar con el valor anterior.
+     * La lectura no guarda en la cache el valor todavía sin confirmar
+     */
+    private Producto releerAjustado(Long id) {
+        Cache cacheSegundoNivel = entityManager.getEntityManagerFactory().getCache();
+        cacheSegundoNivel.evict(Producto.class, id);
+        TransaccionUtils.despuesDelCommit(() -> cacheSegundoNivel.evict(Producto.class, id));
+        // Si la sesión ya tenía el producto, su estado es el de antes del UPDATE
+        entityManager.detach(entityManager.getReference(Producto.class, id));
+        return entityManager.find(Producto.class, id, Map.of(
+                SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS,
+                SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.BYPASS));
+    }
+
     private void registrarMovimiento(Producto producto, String usuario, String tipo, int cantidad, String motivo) {
-        Movimiento movimiento = Movimiento.builder()
+        registroMovimientos.registrar(nuevoMovimiento(producto, usuario, tipo, cantidad, motivo));
+    }
+
+    private Movimiento nuevoMovimiento(Producto producto, String usuario, String tipo, int cantidad, String motivo) {
+        return Movimiento.builder()
                 .producto(producto)
                 .usuario(usuario)
                 .tipo(tipo)
@@ -120,17 +474,56 @@ public class ProductoService {
                 .motivo(motivo)
                 .fechaMovimiento(LocalDateTime.now())
                 .build();
-
-        movimientoRepository.save(movimiento);
     }
 
     @Transactional
     public ResponseEntity<String> eliminarProducto(Long id) {
-        Producto productoExistente = obtenerProductoPorId(id);
-        // Eliminar todos los movimientos asociados a este producto
-        movimientoRepository.deleteAllByProductoId(id);
-        // Ahora eliminar el producto
-        productoRepository.delete(productoExistente);
+        return eliminarProducto(id, ModoEliminacion.INMEDIATO);
+    }
+
+    /**
+     * Elimina un producto. En modo inmediato borra su historial con un único DELETE y después el
+     * producto; en modo diferido solo lo marca como eliminado y PurgaProductosService borra el
+     * historial por bloques en segundo plano.
+     */
+    @Transactional
+    public ResponseEntity<String> eliminarProducto(Long id, ModoEliminacion modo) {
+        obtenerProductoPorId(id);
+        eliminar(List.of(id), modo);
+        if (modo == ModoEliminacion.DIFERIDO) {
+            return ResponseEntity.accepted().body("Producto eliminado; su historial se purgará en segundo plano");
+        }
         return ResponseEntity.ok("Producto y movimientos eliminados exitosamente");
     }
-}
\ No newline at end of file
+
+    /**
+     * Elimina varios productos con sentencias por bloques de ids. Los ids inexistentes se ignoran.
+     * @return cantidad de productos eliminados
+     */
+    @Transactional
+    public int eliminarProductos(Collection<Long> ids, ModoEliminacion modo) {
+        List<Long> distintos = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distintos.size() > TAMANIO_LOTE_MAXIMO) {
+            throw new IllegalArgumentException("El lote no puede superar " + TAMANIO_LOTE_MAXIMO + " productos");
+        }
+        int eliminados = 0;
+        for (int desde = 0; desde < distintos.size(); desde += TAMANIO_BLOQUE_CONSULTA) {
+            eliminados += eliminar(distintos.subList(desde, Math.min(desde + TAMANIO_BLOQUE_CONSULTA, distintos.size())), modo);
+        }
+        return eliminados;
+    }
+
+    private int eliminar(List<Long> ids, ModoEliminacion modo) {
+        int eliminados;
+        if (modo == ModoEliminacion.DIFERIDO) {
+            eliminados = productoRepository.marcarEliminados(ids);
+        } else {
+            movimientoRepository.eliminarPorProductoIds(ids);
+            eliminados = productoRepository.eliminarPorIds(ids);
+        }
+        ids.forEach(indiceBusqueda::eliminar);
+        versiones.registrarCambio(List.copyOf(ids));
+        alertasStockBajo.quitar(ids);
+        return eliminados;
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.proyectofinal.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Purga en segundo plano los productos con borrado lógico: primero su historial, por bloques
+ * de movimientos en transacciones cortas, y al final la fila del producto. Así un producto con
+ * decenas de miles de movimientos no mantiene una transacción abierta ni bloquea la petición
+ * que lo eliminó.
+ */
+@Slf4j
+@Service
+public class PurgaProductosService {
+
+    private static final int PRODUCTOS_POR_EJECUCION = 100;
+
+    private final ProductoRepository productoRepository;
+    private final MovimientoRepository movimientoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanioBloque;
+
+    public PurgaProductosService(ProductoRepository productoRepository,
+                                 MovimientoRepository movimientoRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${productos.purga.tamanio-bloque:1000}") int tamanioBloque) {
+        this.productoRepository = productoRepository;
+        this.movimientoRepository = movimientoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanioBloque = tamanioBloque;
+    }
+
+    @Scheduled(fixedDelayString = "${productos.purga.intervalo:30s}", initialDelayString = "${productos.purga.intervalo:30s}")
+    public void purgarPendientes() {
+        List<Long> ids;
+        do {
+            ids = productoRepository.findIdsEliminados(PRODUCTOS_POR_EJECUCION);
+            for (Long id : ids) {
+                try {
+                    purgar(id);
+                } catch (RuntimeException ex) {
+                    // Se reintenta en la siguiente ejecución programada
+                    log.warn("No se pudo purgar el producto {}: {}", id, ex.getMessage());
+                    return;
+                }
+            }
+        } while (ids.size() == PRODUCTOS_POR_EJECUCION);
+    }
+
+    /**
+     * Elimina el historial y la fila de un producto ya marcado como eliminado
+     * @return cantidad de movimientos borrados
+     */
+    public long purgar(Long productoId) {
+        long total = 0;
+        int borrados;
+        do {
+            borrados = transactionTemplate.execute(estado ->
+                    movimientoRepository.purgarBloquePorProductoId(productoId, tamanioBloque));
+            total += borrados;
+        } while (borrados == tamanioBloque);
+        transactionTemplate.executeWithoutResult(estado -> productoRepository.purgarEliminado(productoId));
+        log.debug("Producto {} purgado con {} movimientos", productoId, total);
+        return total;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.proyectofinal.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Respuestas de escrituras ya atendidas, indexadas por la cabecera Idempotency-Key del cliente.
+ * Un reintento con la misma clave devuelve la respuesta guardada sin volver a ejecutar la
+ * operación. Si la primera petición sigue en curso, los reintentos esperan su resultado en lugar
+ * de lanzar otra inserción u otro movimiento. Solo se guardan respuestas 2xx y 4xx: tras un
+ * error del servidor o una excepción la clave se libera y el siguiente reintento vuelve a
+ * ejecutar. El almacén está acotado en tamaño y las entradas caducan tras el TTL configurado.
+ * Es local a cada instancia.
+ */
+@Component
+public class RegistroIdempotencia {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private record Entrada(String huella, CompletableFuture<ResponseEntity<?>> respuesta) {
+    }
+
+    private final Cache<String, Entrada> entradas;
+    private final Duration esperaMaxima;
+
+    public RegistroIdempotencia(@Value("${integracion.idempotencia.tamanio-maximo:10000}") long tamanioMaximo,
+                                @Value("${integracion.idempotencia.ttl:24h}") Duration ttl,
+                                @Value("${integracion.idempotencia.espera-maxima:30s}") Duration esperaMaxima) {
+        this.entradas = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .build();
+        this.esperaMaxima = esperaMaxima;
+    }
+
+    /**
+     * Ejecuta la operación una sola vez por clave.
+     * @param clave valor de Idempotency-Key, o null para ejecutar sin deduplicar
+     * @param ambito usuario y operación; la misma clave en otro ámbito es otra petición
+     * @param huella identifica los datos de la petición; reutilizar la clave con otros datos da 422
+     */
+    public ResponseEntity<?> ejecutar(String clave, String ambito, String huella, Supplier<ResponseEntity<?>> operacion) {
+        if (clave == null) {
+            return operacion.get();
+        }
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            return ResponseEntity.badRequest().body(CABECERA + " debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+
+        String id = ambito + "|" + clave;
+        Entrada propia = new Entrada(huella, new CompletableFuture<>());
+        Entrada existente = entradas.asMap().putIfAbsent(id, propia);
+        if (existente != null) {
+            return repetir(existente, huella);
+        }
+
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = operacion.get();
+        } catch (RuntimeException | Error ex) {
+            entradas.asMap().remove(id, propia);
+            propia.respuesta().completeExceptionally(ex);
+            throw ex;
+        }
+        if (respuesta.getStatusCode().is5xxServerError()) {
+            entradas.asMap().remove(id, propia);
+        }
+        propia.respuesta().complete(respuesta);
+        return respuesta;
+    }
+
+    private ResponseEntity<?> repetir(Entrada existente, String huella) {
+        if (!existente.huella().equals(huella)) {
+            return ResponseEntity.unprocessableEntity().body(CABECERA + " ya usada con otra petición");
+        }
+        ResponseEntity<?> original;
+        try {
+            original = existente.respuesta().get(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("La petición original sigue en curso; reintente más tarde");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (ExecutionException ex) {
+            // La original falló sin respuesta: se propaga el mismo error a quien la esperaba
+            if (ex.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(CABECERA_REPETIDA, "true")
+                .body(original.getBody());
+    }
+}
@@ -0,0 +1,250 @@
+package org.example.proyectofinal.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Punto único de escritura de movimientos de auditoría.
+ * <p>
+ * En modo {@code sincrono} (por defecto) cada movimiento se guarda en el hilo de la petición,
+ * dentro de su transacción. En modo {@code asincrono} los movimientos se encolan tras el commit
+ * en una cola acotada y un hilo escritor los inserta por lotes, al llenarse el lote o al vencer
+ * el intervalo. Si la cola está llena el movimiento se guarda en el hilo que lo registra, lo que
+ * frena al productor en lugar de perder datos. Al apagar la aplicación se vacía la cola.
+ * En ambos modos cada movimiento confirmado se entrega a {@link DifusorMovimientos}.
+ */
+@Slf4j
+@Component
+public class RegistroMovimientos implements SmartLifecycle {
+
+    // Valores de la restricción CHECK de V3; cualquier otro se agrupa para acotar la cardinalidad de la métrica
+    private static final Set<String> TIPOS_CONOCIDOS = Set.of("CREACION", "ACTUALIZACION", "ENTRADA", "SALIDA");
+
+    public enum Modo {
+        SINCRONO, ASINCRONO
+    }
+
+    private final MovimientoRepository movimientoRepository;
+    private final DifusorMovimientos difusor;
+    private final TransactionTemplate transactionTemplate;
+    // Para el desborde, que se ejecuta en afterCommit: con REQUIRED se uniría a la transacción ya confirmada
+    private final TransactionTemplate transaccionPropia;
+    private final Modo modo;
+    private final BlockingQueue<Movimiento> cola;
+    private final int tamanioLote;
+    private final Duration intervaloFlush;
+    private final Duration esperaColaLlena;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer tiempoFlush;
+    private final Counter movimientosEscritos;
+    private final Counter desbordesCola;
+
+    private volatile boolean activo;
+    private Thread escritor;
+
+    public RegistroMovimientos(MovimientoRepository movimientoRepository,
+                               DifusorMovimientos difusor,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${movimientos.auditoria.modo:sincrono}") String modo,
+                               @Value("${movimientos.auditoria.capacidad-cola:10000}") int capacidadCola,
+                               @Value("${movimientos.auditoria.tamanio-lote:200}") int tamanioLote,
+                               @Value("${movimientos.auditoria.intervalo-flush:200ms}") Duration intervaloFlush,
+                               @Value("${movimientos.auditoria.espera-cola-llena:50ms}") Duration esperaColaLlena) {
+        this.movimientoRepository = movimientoRepository;
+        this.difusor = difusor;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.modo = Modo.valueOf(modo.trim().toUpperCase());
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.tamanioLote = tamanioLote;
+        this.intervaloFlush = intervaloFlush;
+        this.esperaColaLlena = esperaColaLlena;
+
+        Gauge.builder("movimientos.auditoria.cola", cola, BlockingQueue::size)
+                .description("Movimientos pendientes de escribir")
+                .register(meterRegistry);
+        this.tiempoFlush = Timer.builder("movimientos.auditoria.flush")
+                .description("Tiempo de escritura de cada lote de movimientos")
+                .register(meterRegistry);
+        this.movimientosEscritos = Counter.builder("movimientos.auditoria.escritos")
+                .register(meterRegistry);
+        this.desbordesCola = Counter.builder("movimientos.auditoria.desbordes")
+                .description("Movimientos guardados en el hilo de la petición por cola llena")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra un movimiento según el modo configurado.
+     */
+    public void registrar(Movimiento movimiento) {
+        contabilizar(movimiento.getTipo(), 1);
+        if (modo == Modo.SINCRONO || !activo) {
+            movimientoRepository.save(movimiento);
+            difusor.publicarDespuesDelCommit(movimiento);
+            return;
+        }
+        // Solo se encola lo que llega a confirmarse
+        TransaccionUtils.despuesDelCommit(() -> encolar(movimiento));
+    }
+
+    /**
+     * Guarda el movimiento en el hilo actual, dentro de la transacción activa si la hay.
+     * Para quien necesite leer el movimiento inmediatamente después de escribirlo.
+     */
+    public void registrarSincrono(Movimiento movimiento) {
+        contabilizar(movimiento.getTipo(), 1);
+        movimientoRepository.save(movimiento);
+        difusor.publicarDespuesDelCommit(movimiento);
+    }
+
+    /**
+     * Suma movimientos confirmados al contador por tipo. Lo usan también quienes persisten
+     * movimientos directamente, como la creación de productos en lote.
+     */
+    public void contabilizar(String tipo, int cantidad) {
+        String etiqueta = tipo != null && TIPOS_CONOCIDOS.contains(tipo) ? tipo : "OTRO";
+        Counter contador = Counter.builder("movimientos.registrados")
+                .description("Movimientos de stock confirmados")
+                .tag("tipo", etiqueta)
+                .register(meterRegistry);
+        TransaccionUtils.despuesDelCommit(() -> contador.increment(cantidad));
+    }
+
+    public int pendientes() {
+        return cola.size();
+    }
+
+    private void encolar(Movimiento movimiento) {
+        boolean encolado;
+        try {
+            encolado = activo && cola.offer(movimiento, esperaColaLlena.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            encolado = false;
+        }
+        if (!encolado) {
+            desbordesCola.increment();
+            transaccionPropia.executeWithoutResult(status -> movimientoRepository.save(movimiento));
+            // Ya confirmado; publicarDespuesDelCommit lo dejaría pendiente de la transacción que terminó
+            difusor.publicar(List.of(MovimientoResumen.de(movimiento)));
+        }
+    }
+
+    private void ejecutarEscritor() {
+        List<Movimiento> lote = new ArrayList<>(tamanioLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                Movimiento primero = cola.poll(intervaloFlush.toMillis(), TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                long limite = System.nanoTime() + intervaloFlush.toNanos();
+                while (lote.size() < tamanioLote) {
+                    cola.drainTo(lote, tamanioLote - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= tamanioLote || restante <= 0) {
+                        break;
+                    }
+                    Movimiento siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+            } catch (InterruptedException ex) {
+                // Se sigue vaciando la cola; la condición del bucle decide cuándo terminar
+                Thread.currentThread().interrupt();
+                cola.drainTo(lote, tamanioLote - lote.size());
+            }
+            if (!lote.isEmpty()) {
+                escribirLote(lote);
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLote(List<Movimiento> lote) {
+        try {
+            tiempoFlush.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> movimientoRepository.saveAll(lote)));
+            movimientosEscritos.increment(lote.size());
+            difusor.publicarDespuesDelCommit(lote);
+        } catch (RuntimeException ex) {
+            // Un movimiento inválido (p. ej. de un producto ya eliminado) no debe tumbar el lote entero
+            log.warn("Fallo al escribir un lote de {} movimientos, se reintenta uno a uno", lote.size(), ex);
+            for (Movimiento movimiento : lote) {
+                try {
+                    movimiento.setId(null);
+                    transactionTemplate.executeWithoutResult(status -> movimientoRepository.save(movimiento));
+                    movimientosEscritos.increment();
+                    difusor.publicarDespuesDelCommit(movimiento);
+                } catch (RuntimeException error) {
+                    log.error("Movimiento descartado: {}", movimiento, error);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (modo != Modo.ASINCRONO) {
+            return;
+        }
+        activo = true;
+        escritor = new Thread(this::ejecutarEscritor, "registro-movimientos");
+        escritor.setDaemon(false);
+        escritor.start();
+    }
+
+    @Override
+    public void stop() {
+        activo = false;
+        if (escritor != null) {
+            try {
+                escritor.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (!cola.isEmpty()) {
+                log.warn("Quedaron {} movimientos sin escribir al detener el registro", cola.size());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return activo;
+    }
+
+    // Se detiene después del servidor web, cuando ya no entran peticiones nuevas
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.proyectofinal.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.proyectofinal.config.CacheConfig;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versiones en memoria de cada producto y del catálogo completo, para calcular ETags sin ir a
+ * la base de datos. ProductoService las incrementa después del commit de cada escritura.
+ * En ese mismo callback, y antes de subir ninguna versión, se invalidan las entradas afectadas
+ * de las caches de productos: un ETag nuevo nunca se publica mientras la cache aún guarda el
+ * cuerpo anterior. Los listados y búsquedas se cachean además por versión del catálogo (ver
+ * ProductoService), así una carga que empezó antes del commit no puede quedar bajo el ETag nuevo.
+ * Un producto sin entrada (nunca modificado desde el arranque o desalojado) recibe como versión
+ * el "piso": la mayor versión desalojada hasta ahora. Así un desalojo solo provoca una respuesta
+ * completa de más, nunca un 304 con datos viejos. La generación cambia en cada arranque para
+ * que los contadores reiniciados no repitan ETags; con varias instancias cada una tiene la suya,
+ * igual que la cache de productos.
+ */
+@Component
+public class VersionesProductos {
+
+    private final String generacion = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong ultimaVersion = new AtomicLong();
+    private final AtomicLong versionCatalogo = new AtomicLong();
+    private final AtomicLong piso = new AtomicLong();
+    private final Cache<Long, Long> versiones;
+    private final CacheManager cacheManager;
+
+    public VersionesProductos(CacheManager cacheManager,
+                              @Value("${productos.etag.tamanio-maximo:100000}") long tamanioMaximo) {
+        this.cacheManager = cacheManager;
+        this.versiones = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                // Síncrono con el desalojo: ningún lector ve el producto sin entrada antes de subir el piso
+                .<Long, Long>evictionListener((id, version, causa) -> {
+                    if (version != null) {
+                        piso.accumulateAndGet(version, Math::max);
+                    }
+                })
+                .build();
+    }
+
+    public String etagProducto(Long id) {
+        Long version = versiones.getIfPresent(id);
+        return "\"p-" + generacion + "-" + (version != null ? version : piso.get()) + "\"";
+    }
+
+    public String etagCatalogo() {
+        return "\"c-" + generacion + "-" + versionCatalogo.get() + "\"";
+    }
+
+    // Parte de la clave de los listados y búsquedas cacheados en ProductoService
+    public long versionCatalogo() {
+        return versionCatalogo.get();
+    }
+
+    /**
+     * Registra la modificación de los productos indicados (y por tanto del catálogo)
+     * cuando la transacción actual confirme
+     */
+    public void registrarCambio(Collection<Long> ids) {
+        List<Long> copia = List.copyOf(ids);
+        TransaccionUtils.despuesDelCommit(() -> {
+            org.springframework.cache.Cache productos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+            if (productos != null) {
+                // Con la cache de Caffeine, evict espera a una carga en curso de la misma clave y la descarta
+                copia.forEach(productos::evict);
+            }
+            invalidarListados();
+            for (Long id : copia) {
+                versiones.put(id, ultimaVersion.incrementAndGet());
+            }
+            nuevaVersionCatalogo();
+        });
+    }
+
+    public void registrarCambio(Long id) {
+        registrarCambio(List.of(id));
+    }
+
+    /** Para altas en las que ningún producto existente cambia, solo el listado */
+    public void registrarCambioCatalogo() {
+        TransaccionUtils.despuesDelCommit(() -> {
+            invalidarListados();
+            nuevaVersionCatalogo();
+        });
+    }
+
+    private void invalidarListados() {
+        for (String nombre : List.of(CacheConfig.LISTADO_PRODUCTOS, CacheConfig.BUSQUEDA_PRODUCTOS)) {
+            org.springframework.cache.Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    // Con max para que dos commits simultáneos no dejen el catálogo en la versión más antigua
+    private void nuevaVersionCatalogo() {
+        versionCatalogo.accumulateAndGet(ultimaVersion.incrementAndGet(), Math::max);
+    }
+}
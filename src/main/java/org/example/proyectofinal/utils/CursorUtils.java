@@ -0,0 +1,55 @@
+package org.example.proyectofinal.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica los cursores opacos usados en la paginación por clave.
+ * El cliente solo debe devolver el valor recibido, nunca construirlo.
+ */
+public final class CursorUtils {
+
+    private static final String SEPARADOR = "|";
+
+    private CursorUtils() {
+    }
+
+    /**
+     * Genera un cursor opaco a partir de un tipo y los valores de la última fila vista
+     * @param tipo identificador del listado al que pertenece el cursor
+     * @param valores valores de la clave de ordenación
+     * @return cursor en Base64 URL-safe
+     */
+    public static String codificar(String tipo, Object... valores) {
+        StringBuilder sb = new StringBuilder(tipo);
+        for (Object valor : valores) {
+            sb.append(SEPARADOR).append(valor);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor validando su tipo y número de valores
+     * @param cursor cursor recibido del cliente
+     * @param tipo tipo de listado esperado
+     * @param cantidadValores cantidad de valores esperados
+     * @return valores de la clave de ordenación
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public static String[] decodificar(String cursor, String tipo, int cantidadValores) {
+        String texto;
+        try {
+            texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        String[] partes = texto.split("\\" + SEPARADOR, -1);
+        if (partes.length != cantidadValores + 1 || !partes[0].equals(tipo)) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        String[] valores = new String[cantidadValores];
+        System.arraycopy(partes, 1, valores, 0, cantidadValores);
+        return valores;
+    }
+}
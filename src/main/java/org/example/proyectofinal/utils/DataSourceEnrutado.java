@@ -0,0 +1,93 @@
+package org.example.proyectofinal.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Envía las transacciones de solo lectura a la réplica y todo lo demás a la primaria.
+ * Tras una escritura confirmada de un usuario, sus lecturas van a la primaria durante la
+ * ventana configurada, para que vea sus propios cambios aunque la réplica vaya con retraso.
+ * Las lecturas anónimas (catálogo público) siempre pueden ir a la réplica.
+ * <p>
+ * Lo que se lee de la réplica puede ir por detrás de la primaria, así que no debe acabar en caches
+ * compartidas: las cargas de las caches de Spring se marcan con {@link #usarSoloPrimaria(boolean)}
+ * y, al elegir la réplica, se avisa a quien configure {@link #setAlUsarReplica(Runnable)}.
+ * <p>
+ * La decisión depende del estado de la transacción, así que debe usarse detrás de un
+ * LazyConnectionDataSourceProxy: la conexión física se pide en la primera sentencia, cuando
+ * Spring ya ha marcado la transacción como de solo lectura.
+ */
+public class DataSourceEnrutado extends AbstractRoutingDataSource {
+
+    public enum Destino {
+        PRIMARIA, REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> SOLO_PRIMARIA = new ThreadLocal<>();
+
+    private final Cache<String, Boolean> escriturasRecientes;
+    private Runnable alUsarReplica = () -> {
+    };
+
+    public DataSourceEnrutado(DataSource primaria, DataSource replica, Duration ventanaLecturaPropia) {
+        setTargetDataSources(Map.of(Destino.PRIMARIA, primaria, Destino.REPLICA, replica));
+        setDefaultTargetDataSource(primaria);
+        this.escriturasRecientes = Caffeine.newBuilder()
+                .expireAfterWrite(ventanaLecturaPropia)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Hace que las lecturas del hilo actual vayan a la primaria mientras valga true
+     * @return el valor anterior, para restaurarlo al terminar
+     */
+    public static boolean usarSoloPrimaria(boolean soloPrimaria) {
+        boolean anterior = SOLO_PRIMARIA.get() != null;
+        if (soloPrimaria) {
+            SOLO_PRIMARIA.set(Boolean.TRUE);
+        } else {
+            SOLO_PRIMARIA.remove();
+        }
+        return anterior;
+    }
+
+    // Se ejecuta en el hilo de la transacción cada vez que una conexión se pide a la réplica
+    public void setAlUsarReplica(Runnable alUsarReplica) {
+        this.alUsarReplica = alUsarReplica;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String usuario = usuarioActual();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (usuario != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+                // La ventana empieza al confirmar, que es cuando el cambio empieza a replicarse
+                TransaccionUtils.despuesDelCommit(() -> escriturasRecientes.put(usuario, Boolean.TRUE));
+            }
+            return Destino.PRIMARIA;
+        }
+        if (SOLO_PRIMARIA.get() != null || (usuario != null && escriturasRecientes.getIfPresent(usuario) != null)) {
+            return Destino.PRIMARIA;
+        }
+        alUsarReplica.run();
+        return Destino.REPLICA;
+    }
+
+    private static String usuarioActual() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion == null || !autenticacion.isAuthenticated() || autenticacion instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return autenticacion.getName();
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.proyectofinal.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Decorador de {@link JwtDecoder} que recuerda los tokens ya verificados hasta su expiración.
+ * Un mismo token llega en cada petición del cliente durante su vida útil, así que la verificación
+ * de firma y claims solo se paga la primera vez. Los tokens rechazados nunca se guardan.
+ */
+public class DecodificadorJwtCacheado implements JwtDecoder {
+
+    private final JwtDecoder delegado;
+    private final Cache<String, Jwt> verificados;
+    private final Clock reloj;
+
+    public DecodificadorJwtCacheado(JwtDecoder delegado, long tamanioMaximo, Duration vidaMaxima) {
+        this(delegado, tamanioMaximo, vidaMaxima, Clock.systemUTC());
+    }
+
+    DecodificadorJwtCacheado(JwtDecoder delegado, long tamanioMaximo, Duration vidaMaxima, Clock reloj) {
+        this.delegado = delegado;
+        this.reloj = reloj;
+        this.verificados = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new HastaExpiracion(vidaMaxima, reloj))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt jwt = verificados.getIfPresent(token);
+        if (jwt != null && (jwt.getExpiresAt() == null || reloj.instant().isBefore(jwt.getExpiresAt()))) {
+            return jwt;
+        }
+        jwt = delegado.decode(token);
+        verificados.put(token, jwt);
+        return jwt;
+    }
+
+    public Cache<String, Jwt> getVerificados() {
+        return verificados;
+    }
+
+    // Cada entrada vive hasta el exp del token, acotado por una vida máxima
+    private record HastaExpiracion(Duration vidaMaxima, Clock reloj) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String token, Jwt jwt, long tiempoActual) {
+            Instant expiracion = jwt.getExpiresAt();
+            if (expiracion == null) {
+                return vidaMaxima.toNanos();
+            }
+            Duration restante = Duration.between(reloj.instant(), expiracion);
+            if (restante.isNegative()) {
+                return 0;
+            }
+            return Math.min(restante.toNanos(), vidaMaxima.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Jwt jwt, long tiempoActual, long duracionActual) {
+            return expireAfterCreate(token, jwt, tiempoActual);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Jwt jwt, long tiempoActual, long duracionActual) {
+            return duracionActual;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.proyectofinal.utils;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+public final class EtagUtils {
+
+    // Sin no-cache el navegador no guarda la respuesta (Spring Security envía no-store) y nunca revalida
+    private static final CacheControl REVALIDAR_SIEMPRE = CacheControl.noCache().cachePrivate();
+
+    private EtagUtils() {
+    }
+
+    /**
+     * Responde 304 si el If-None-Match de la petición coincide con el ETag, sin calcular el
+     * cuerpo; en otro caso 200 con el cuerpo y el ETag. El ETag debe obtenerse antes de leer
+     * los datos: si una escritura se cuela entre medias, el cliente recibe datos más nuevos que
+     * el ETag y en la siguiente petición simplemente vuelve a descargarlos.
+     */
+    public static <T> ResponseEntity<T> responder(WebRequest peticion, String etag, Supplier<T> cuerpo) {
+        if (peticion.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDAR_SIEMPRE).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDAR_SIEMPRE).body(cuerpo.get());
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.proyectofinal.utils;
+
+import org.example.proyectofinal.dto.MovimientoResumen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato de los ficheros de historial archivado: grupos de filas guardados columna a columna
+ * (ids, productos, fechas, cantidades y textos con diccionario) y comprimidos con gzip. Los
+ * valores repetidos de una columna quedan juntos, lo que comprime mucho mejor que fila a fila,
+ * y el lector solo necesita un grupo en memoria.
+ *
+ * <pre>
+ * cabecera: MAGIA, VERSION
+ * grupo:    n, id[n], productoId[n], fecha[n] (microsegundos UTC), cantidad[n],
+ *           productoNombre, productoCategoria, usuario, tipo, motivo (diccionario + código[n], -1 = null)
+ * fin:      n = 0
+ * </pre>
+ */
+public final class FormatoColumnarMovimientos {
+
+    private static final int MAGIA = 0x4D4F5643; // "MOVC"
+    private static final int VERSION = 1;
+    static final int FILAS_POR_GRUPO = 8192;
+
+    private FormatoColumnarMovimientos() {
+    }
+
+    /**
+     * Escribe movimientos en el orden recibido, un grupo cada {@value #FILAS_POR_GRUPO} filas
+     */
+    public static final class Escritor implements Closeable {
+
+        private final DataOutputStream salida;
+        private final List<MovimientoResumen> grupo = new ArrayList<>(FILAS_POR_GRUPO);
+        private long filas;
+
+        public Escritor(OutputStream salida) throws IOException {
+            this.salida = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(salida, 65536), 65536));
+            this.salida.writeInt(MAGIA);
+            this.salida.writeInt(VERSION);
+        }
+
+        public void escribir(MovimientoResumen movimiento) throws IOException {
+            grupo.add(movimiento);
+            filas++;
+            if (grupo.size() == FILAS_POR_GRUPO) {
+                volcarGrupo();
+            }
+        }
+
+        public long filas() {
+            return filas;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (salida) {
+                volcarGrupo();
+                salida.writeInt(0);
+            }
+        }
+
+        private void volcarGrupo() throws IOException {
+            if (grupo.isEmpty()) {
+                return;
+            }
+            salida.writeInt(grupo.size());
+            for (MovimientoResumen m : grupo) {
+                salida.writeLong(m.id());
+            }
+            for (MovimientoResumen m : grupo) {
+                salida.writeLong(m.productoId());
+            }
+            for (MovimientoResumen m : grupo) {
+                salida.writeLong(aMicros(m.fechaMovimiento()));
+            }
+            for (MovimientoResumen m : grupo) {
+                salida.writeInt(m.cantidad());
+            }
+            escribirTexto(MovimientoResumen::productoNombre);
+            escribirTexto(MovimientoResumen::productoCategoria);
+            escribirTexto(MovimientoResumen::usuario);
+            escribirTexto(MovimientoResumen::tipo);
+            escribirTexto(MovimientoResumen::motivo);
+            grupo.clear();
+        }
+
+        private void escribirTexto(Function<MovimientoResumen, String> columna) throws IOException {
+            Map<String, Integer> diccionario = new HashMap<>();
+            List<String> valores = new ArrayList<>();
+            int[] codigos = new int[grupo.size()];
+            for (int i = 0; i < codigos.length; i++) {
+                String valor = columna.apply(grupo.get(i));
+                if (valor == null) {
+                    codigos[i] = -1;
+                    continue;
+                }
+                codigos[i] = diccionario.computeIfAbsent(valor, v -> {
+                    valores.add(v);
+                    return valores.size() - 1;
+                });
+            }
+            salida.writeInt(valores.size());
+            for (String valor : valores) {
+                byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+                salida.writeInt(bytes.length);
+                salida.write(bytes);
+            }
+            for (int codigo : codigos) {
+                salida.writeInt(codigo);
+            }
+        }
+    }
+
+    /**
+     * Lee un fichero grupo a grupo, en el mismo orden en que se escribió
+     */
+    public static final class Lector implements Closeable {
+
+        private final DataInputStream entrada;
+        private boolean terminado;
+
+        public Lector(InputStream entrada) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(new GZIPInputStream(entrada, 65536), 65536));
+            if (this.entrada.readInt() != MAGIA) {
+                throw new IOException("No es un fichero de movimientos archivados");
+            }
+            int version = this.entrada.readInt();
+            if (version != VERSION) {
+                throw new IOException("Versión de archivo no soportada: " + version);
+            }
+        }
+
+        /**
+         * @return las filas del siguiente grupo, o null al llegar al final
+         */
+        public List<MovimientoResumen> siguienteGrupo() throws IOException {
+            if (terminado) {
+                return null;
+            }
+            int n;
+            try {
+                n = entrada.readInt();
+            } catch (EOFException ex) {
+                throw new IOException("Fichero de movimientos archivados truncado", ex);
+            }
+            if (n == 0) {
+                terminado = true;
+                return null;
+            }
+            long[] ids = leerLongs(n);
+            long[] productoIds = leerLongs(n);
+            long[] fechas = leerLongs(n);
+            int[] cantidades = new int[n];
+            for (int i = 0; i < n; i++) {
+                cantidades[i] = entrada.readInt();
+            }
+            String[] nombres = leerTexto(n);
+            String[] categorias = leerTexto(n);
+            String[] usuarios = leerTexto(n);
+            String[] tipos = leerTexto(n);
+            String[] motivos = leerTexto(n);
+
+            List<MovimientoResumen> filas = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                filas.add(new MovimientoResumen(ids[i], productoIds[i], nombres[i], categorias[i],
+                        usuarios[i], tipos[i], cantidades[i], motivos[i], deMicros(fechas[i])));
+            }
+            return filas;
+        }
+
+        @Override
+        public void close() throws IOException {
+            entrada.close();
+        }
+
+        private long[] leerLongs(int n) throws IOException {
+            long[] valores = new long[n];
+            for (int i = 0; i < n; i++) {
+                valores[i] = entrada.readLong();
+            }
+            return valores;
+        }
+
+        private String[] leerTexto(int n) throws IOException {
+            String[] diccionario = new String[entrada.readInt()];
+            for (int i = 0; i < diccionario.length; i++) {
+                byte[] bytes = new byte[entrada.readInt()];
+                entrada.readFully(bytes);
+                diccionario[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            String[] valores = new String[n];
+            for (int i = 0; i < n; i++) {
+                int codigo = entrada.readInt();
+                valores[i] = codigo < 0 ? null : diccionario[codigo];
+            }
+            return valores;
+        }
+    }
+
+    private static long aMicros(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1_000;
+    }
+
+    private static LocalDateTime deMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
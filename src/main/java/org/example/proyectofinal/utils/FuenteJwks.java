@@ -0,0 +1,135 @@
+package org.example.proyectofinal.utils;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conjunto de claves públicas para verificar JWT que no depende de Keycloak para arrancar.
+ * Se precarga desde un fichero o recurso del classpath y se refresca en segundo plano desde el
+ * endpoint JWKS. Si llega un token firmado con una clave desconocida (rotación) se fuerza un
+ * refresco, como mucho una vez por intervalo mínimo.
+ */
+@Slf4j
+public class FuenteJwks implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final int TIMEOUT_MS = 5000;
+    private static final Duration REFRESCO_MINIMO = Duration.ofSeconds(30);
+
+    private final Resource ubicacionLocal;
+    private final String jwkSetUri;
+    private final ScheduledExecutorService refresco;
+    private final AtomicLong ultimoRefresco = new AtomicLong(System.nanoTime() - REFRESCO_MINIMO.toNanos());
+    private volatile JWKSet claves = new JWKSet();
+
+    public FuenteJwks(Resource ubicacionLocal, String jwkSetUri, Duration intervaloRefresco) {
+        this.ubicacionLocal = ubicacionLocal;
+        this.jwkSetUri = jwkSetUri;
+        cargarLocal();
+        this.refresco = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "jwks-refresco");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // El primer refresco remoto es inmediato pero asíncrono: el arranque no espera a Keycloak
+        refresco.scheduleWithFixedDelay(this::refrescarSilencioso, 0, intervaloRefresco.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext contexto) throws KeySourceException {
+        List<JWK> encontradas = selector.select(claves);
+        if (encontradas.isEmpty() && puedeRefrescar()) {
+            refrescarSilencioso();
+            encontradas = selector.select(claves);
+        }
+        return encontradas;
+    }
+
+    public JWKSet getClaves() {
+        return claves;
+    }
+
+    /**
+     * Descarga el JWKS remoto y, si la ubicación local es un fichero, lo guarda para el próximo arranque
+     * @throws IOException si el endpoint no responde o el contenido no es un JWKS válido
+     */
+    public synchronized void refrescar() throws IOException {
+        ultimoRefresco.set(System.nanoTime());
+        JWKSet remotas;
+        try {
+            remotas = JWKSet.load(URI.create(jwkSetUri).toURL(), TIMEOUT_MS, TIMEOUT_MS, 0);
+        } catch (ParseException ex) {
+            throw new IOException("JWKS remoto inválido: " + ex.getMessage(), ex);
+        }
+        claves = remotas;
+        guardarLocal(remotas);
+    }
+
+    @Override
+    public void close() {
+        refresco.shutdownNow();
+    }
+
+    private void refrescarSilencioso() {
+        try {
+            refrescar();
+        } catch (Exception ex) {
+            log.warn("No se pudo refrescar el JWKS desde {}: {}", jwkSetUri, ex.getMessage());
+        }
+    }
+
+    private boolean puedeRefrescar() {
+        long anterior = ultimoRefresco.get();
+        long ahora = System.nanoTime();
+        return ahora - anterior >= REFRESCO_MINIMO.toNanos() && ultimoRefresco.compareAndSet(anterior, ahora);
+    }
+
+    private void cargarLocal() {
+        if (ubicacionLocal == null || !ubicacionLocal.exists()) {
+            return;
+        }
+        try (InputStream entrada = ubicacionLocal.getInputStream()) {
+            claves = JWKSet.load(entrada);
+            log.info("JWKS precargado desde {} ({} claves)", ubicacionLocal.getDescription(), claves.getKeys().size());
+        } catch (IOException | ParseException ex) {
+            log.warn("No se pudo leer el JWKS local {}: {}", ubicacionLocal.getDescription(), ex.getMessage());
+        }
+    }
+
+    private void guardarLocal(JWKSet jwks) {
+        // Solo se persiste en ficheros configurados explícitamente, nunca dentro del classpath
+        if (ubicacionLocal == null || ubicacionLocal instanceof ClassPathResource || !ubicacionLocal.isFile()) {
+            return;
+        }
+        try {
+            File destino = ubicacionLocal.getFile();
+            Path temporal = Files.createTempFile(destino.getAbsoluteFile().getParentFile().toPath(), "jwks", ".tmp");
+            Files.writeString(temporal, jwks.toString(true), StandardCharsets.UTF_8);
+            Files.move(temporal, destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("No se pudo guardar el JWKS en {}: {}", ubicacionLocal.getDescription(), ex.getMessage());
+        }
+    }
+}
@@ -5,21 +5,54 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Convierte los roles de realm_access de Keycloak en authorities.
+ * Los roles de un realm son pocos y se repiten en todos los tokens, así que tanto cada authority
+ * como cada combinación de roles se resuelven una sola vez y se reutilizan como instancias inmutables.
+ */
 public class KeycloakRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    // Límite defensivo: los roles los emite Keycloak, pero no se deja crecer el mapa sin control
+    private static final int MAXIMO_COMBINACIONES = 1024;
+
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+    private final Map<List<String>, List<GrantedAuthority>> combinaciones = new ConcurrentHashMap<>();
+
     @Override
     @SuppressWarnings("unchecked")
     public Collection<GrantedAuthority> convert(Jwt jwt) {
-        Collection<GrantedAuthority> authorities = new ArrayList<>();
         Map<String, Object> realmAccess = jwt.getClaim("realm_access");
-        if (realmAccess != null && realmAccess.containsKey("roles")) {
-            List<String> roles = (List<String>) realmAccess.get("roles");
-            roles.forEach(r -> authorities.add(new SimpleGrantedAuthority(r)));
+        if (realmAccess == null || !(realmAccess.get("roles") instanceof List<?> roles) || roles.isEmpty()) {
+            return List.of();
+        }
+        List<String> nombres = (List<String>) roles;
+        List<GrantedAuthority> resueltas = combinaciones.get(nombres);
+        if (resueltas != null) {
+            return resueltas;
+        }
+        resueltas = nombres.stream().map(this::authority).toList();
+        if (combinaciones.size() < MAXIMO_COMBINACIONES) {
+            combinaciones.putIfAbsent(List.copyOf(nombres), resueltas);
+        }
+        return resueltas;
+    }
+
+    private GrantedAuthority authority(String rol) {
+        GrantedAuthority authority = authorities.get(rol);
+        if (authority == null) {
+            authority = new SimpleGrantedAuthority(rol);
+            if (authorities.size() < MAXIMO_COMBINACIONES) {
+                GrantedAuthority previa = authorities.putIfAbsent(rol, authority);
+                if (previa != null) {
+                    authority = previa;
+                }
+            }
         }
-        return authorities;
+        return authority;
     }
 }
@@ -0,0 +1,8 @@
+-- Sequences used by Hibernate's pooled id allocation (allocationSize = 50),
+-- which is what allows inserts to be sent as JDBC batches
+CREATE SEQUENCE IF NOT EXISTS producto_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS movimiento_seq INCREMENT BY 50;
+
+-- Start after the ids already assigned by the BIGSERIAL columns
+SELECT setval('producto_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM producto), 1));
+SELECT setval('movimiento_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM movimiento), 1));
@@ -0,0 +1,11 @@
+-- Composite indexes for keyset pagination of movement history on (fecha_movimiento, id) DESC
+CREATE INDEX IF NOT EXISTS idx_movimiento_fecha_id ON movimiento(fecha_movimiento DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_movimiento_producto_fecha ON movimiento(producto_id, fecha_movimiento DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_movimiento_usuario_fecha ON movimiento(usuario, fecha_movimiento DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_movimiento_tipo_fecha ON movimiento(tipo, fecha_movimiento DESC, id DESC);
+
+-- The single-column indexes are now covered by the leading columns of the composite ones
+DROP INDEX IF EXISTS idx_movimiento_producto_id;
+DROP INDEX IF EXISTS idx_movimiento_fecha_movimiento;
+DROP INDEX IF EXISTS idx_movimiento_tipo;
+DROP INDEX IF EXISTS idx_movimiento_usuario;
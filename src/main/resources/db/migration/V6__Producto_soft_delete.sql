@@ -0,0 +1,4 @@
+-- Soft delete flag: deleted products are hidden immediately and purged in the background
+ALTER TABLE producto ADD COLUMN IF NOT EXISTS eliminado BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX IF NOT EXISTS idx_producto_eliminado ON producto(id) WHERE eliminado = TRUE;
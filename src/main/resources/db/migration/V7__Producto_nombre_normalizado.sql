@@ -0,0 +1,11 @@
+-- Case-insensitive unique product names, enforced by the database so creation needs no prior SELECT.
+-- The application fills nombre_normalizado on every insert/update (Producto.normalizarNombre);
+-- existing rows are backfilled here. Fails if two existing names differ only in case or surrounding spaces.
+ALTER TABLE producto ADD COLUMN IF NOT EXISTS nombre_normalizado VARCHAR(255);
+UPDATE producto SET nombre_normalizado = LOWER(TRIM(nombre)) WHERE nombre_normalizado IS NULL;
+ALTER TABLE producto ALTER COLUMN nombre_normalizado SET NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_producto_nombre_normalizado ON producto(nombre_normalizado);
+
+-- The exact-match UNIQUE from V1 is implied by the normalized one; dropping it saves an index write per insert
+ALTER TABLE producto DROP CONSTRAINT IF EXISTS producto_nombre_key;
@@ -0,0 +1,49 @@
+-- Monthly range partitioning of movimiento on fecha_movimiento (PostgreSQL 11+).
+-- A partitioned table's primary key must include the partition key, so it becomes (id, fecha_movimiento);
+-- ids still come from movimiento_seq and stay unique on their own.
+-- Partitions are named movimiento_pYYYYMM; ArchivadorMovimientos creates the upcoming ones and archives
+-- to files those older than the configured retention. Rows outside every partition land in movimiento_default.
+ALTER TABLE movimiento RENAME TO movimiento_sin_particionar;
+ALTER INDEX IF EXISTS movimiento_pkey RENAME TO movimiento_sin_particionar_pkey;
+DROP INDEX IF EXISTS idx_movimiento_fecha_id;
+DROP INDEX IF EXISTS idx_movimiento_producto_fecha;
+DROP INDEX IF EXISTS idx_movimiento_usuario_fecha;
+DROP INDEX IF EXISTS idx_movimiento_tipo_fecha;
+
+-- No DEFAULT on id: the old BIGSERIAL sequence goes away with the old table and Hibernate assigns ids from movimiento_seq
+CREATE TABLE movimiento (
+    id BIGINT NOT NULL,
+    producto_id BIGINT NOT NULL REFERENCES producto(id) ON DELETE CASCADE,
+    usuario VARCHAR(255) NOT NULL,
+    tipo VARCHAR(50) NOT NULL CHECK (tipo IN ('CREACION', 'ACTUALIZACION', 'ENTRADA', 'SALIDA')),
+    cantidad INTEGER NOT NULL DEFAULT 0,
+    motivo TEXT,
+    fecha_movimiento TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, fecha_movimiento)
+) PARTITION BY RANGE (fecha_movimiento);
+
+-- One partition per month from the oldest movement up to two months ahead
+DO $$
+DECLARE
+    mes TIMESTAMP := date_trunc('month', COALESCE((SELECT MIN(fecha_movimiento) FROM movimiento_sin_particionar), now()));
+    ultimo TIMESTAMP := date_trunc('month', now()) + INTERVAL '2 months';
+BEGIN
+    WHILE mes <= ultimo LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF movimiento FOR VALUES FROM (%L) TO (%L)',
+                       'movimiento_p' || to_char(mes, 'YYYYMM'), mes, mes + INTERVAL '1 month');
+        mes := mes + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+CREATE TABLE movimiento_default PARTITION OF movimiento DEFAULT;
+
+INSERT INTO movimiento (id, producto_id, usuario, tipo, cantidad, motivo, fecha_movimiento)
+SELECT id, producto_id, usuario, tipo, cantidad, motivo, fecha_movimiento FROM movimiento_sin_particionar;
+
+DROP TABLE movimiento_sin_particionar;
+
+-- Same keyset indexes as V5, created on every partition
+CREATE INDEX idx_movimiento_fecha_id ON movimiento(fecha_movimiento DESC, id DESC);
+CREATE INDEX idx_movimiento_producto_fecha ON movimiento(producto_id, fecha_movimiento DESC, id DESC);
+CREATE INDEX idx_movimiento_usuario_fecha ON movimiento(usuario, fecha_movimiento DESC, id DESC);
+CREATE INDEX idx_movimiento_tipo_fecha ON movimiento(tipo, fecha_movimiento DESC, id DESC);
@@ -0,0 +1,3 @@
+-- Producto.precio is a double: store it as double precision so the column matches the entity
+-- (checked with ddl-auto=validate). The application already read the DECIMAL(10,2) values as doubles.
+ALTER TABLE producto ALTER COLUMN precio TYPE DOUBLE PRECISION;
@@ -144,6 +144,13 @@ public class HttpClientx {
         );
     }
 
+    // El cursor es Base64 URL-safe sin relleno, así que puede ir tal cual en la URL
+    public ResponseEntity<String> getProductsPage(int size, String fields, String cursor) {
+        String url = getGetAllProductsUrl() + "?size=" + size + "&campos=" + fields
+                + (cursor != null ? "&cursor=" + cursor : "");
+        return restTemplate.getForEntity(url, String.class);
+    }
+
     public ResponseEntity<String> getProductById(Long productId) {
         String url = SERVER_URL + port + "/api/productos/" + productId;
         return restTemplate.getForEntity(url, String.class);
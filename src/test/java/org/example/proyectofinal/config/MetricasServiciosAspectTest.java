@@ -0,0 +1,93 @@
+package org.example.proyectofinal.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Métrica productos.servicio de MetricasServiciosAspect: una medición por llamada (también en los
+ * aciertos de cache) con el resultado según la excepción, y el scrape de Prometheus solo para ADMIN.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricasServiciosAspectTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void mideCadaLlamadaConSuResultado() {
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre("Medido " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+        long exitosas = contar("obtenerProductoPorId", "SUCCESS");
+        long errorCliente = contar("ajustarCantidad", "CLIENT_ERROR");
+        long errorServidor = contar("obtenerProductoPorId", "SERVER_ERROR");
+
+        // La segunda lectura sale de la cache y se mide igual
+        productoService.obtenerProductoPorId(producto.getId());
+        productoService.obtenerProductoPorId(producto.getId());
+        assertEquals(exitosas + 2, contar("obtenerProductoPorId", "SUCCESS"));
+
+        assertThrows(IllegalArgumentException.class, () -> productoService.ajustarCantidad(producto.getId(), 0, "nada", "tester"));
+        assertThrows(IllegalStateException.class, () -> productoService.ajustarCantidad(producto.getId(), -11, "salida", "tester"));
+        assertEquals(errorCliente + 2, contar("ajustarCantidad", "CLIENT_ERROR"));
+
+        assertThrows(RuntimeException.class, () -> productoService.obtenerProductoPorId(-1L));
+        assertEquals(errorServidor + 1, contar("obtenerProductoPorId", "SERVER_ERROR"));
+    }
+
+    @Test
+    void prometheusSoloParaAdmin() throws Exception {
+        productoService.listarProductos();
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("productos_servicio_seconds_count{")));
+
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    private long contar(String operacion, String resultado) {
+        Timer timer = meterRegistry.find("productos.servicio")
+                .tag("operation", operacion)
+                .tag("outcome", resultado)
+                .timer();
+        return timer != null ? timer.count() : 0;
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.proyectofinal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Negociación de contenido de la API de integración: lotes enviados y recibidos en CBOR o
+ * Smile, y JSON cuando el cliente no pide ningún formato.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ApiIntegrationFormatosTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void loteEnCborDevuelveResultadosEnCbor() throws Exception {
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        byte[] cuerpo = mockMvc.perform(post("/api/integration/productos/batch")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN")))
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(lote("cbor"))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode resultados = cbor.readTree(cuerpo);
+        assertEquals(2, resultados.size());
+        assertEquals("CREADO", resultados.get(0).get("estado").asText());
+    }
+
+    @Test
+    void listadoEnSmileYJsonPorDefecto() throws Exception {
+        mockMvc.perform(post("/api/integration/productos/batch")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN")))
+                        .contentType(SMILE)
+                        .content(new ObjectMapper(new SmileFactory()).writeValueAsBytes(lote("smile"))))
+                .andExpect(status().isOk());
+
+        byte[] cuerpo = mockMvc.perform(get("/api/integration/productos/listar").param("size", "10").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(true, new ObjectMapper(new SmileFactory()).readTree(cuerpo).get("contenido").isArray());
+
+        mockMvc.perform(get("/api/integration/productos/listar").param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    private List<Map<String, Object>> lote(String formato) {
+        long marca = System.nanoTime();
+        return List.of(
+                Map.of("nombre", formato + " A " + marca, "categoria", "Test", "precio", 2.5, "cantidadInicial", 4),
+                Map.of("nombre", formato + " B " + marca, "categoria", "Test", "precio", 3.5, "cantidadInicial", 6));
+    }
+}
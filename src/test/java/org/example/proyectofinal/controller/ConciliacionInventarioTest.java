@@ -0,0 +1,132 @@
+package org.example.proyectofinal.controller;
+
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ConciliacionStockService;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conciliación de inventario: aplica lo contado por id o por nombre, registra la diferencia
+ * como movimiento y devuelve las líneas rechazadas. Bloques de dos líneas para cruzar varias
+ * transacciones en cada petición.
+ */
+@SpringBootTest(properties = "productos.conciliacion.tamanio-bloque=2")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ConciliacionInventarioTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csvAplicaDiferenciasYDevuelveRechazos() throws Exception {
+        Producto porId = crear("Conteo por id");
+        Producto porNombre = crear("Conteo, por nombre");
+        Producto sinCambios = crear("Conteo sin cambios");
+        String csv = String.join("\n",
+                "nombre,productoId,cantidadContada",
+                "," + porId.getId() + ",15",
+                "\"" + porNombre.getNombre().toUpperCase() + "\",,4",
+                "," + sinCambios.getId() + ",10",
+                ",999999999,5",
+                "," + porId.getId() + ",20",
+                ",abc,5",
+                "," + porNombre.getId() + ",-1");
+
+        mockMvc.perform(post("/api/productos/conciliacion").param("formato", "csv")
+                        .contentType("text/csv").content(csv)
+                        .with(jwt().jwt(token -> token.subject("contador")).authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lineas").value(7))
+                .andExpect(jsonPath("$.ajustados").value(2))
+                .andExpect(jsonPath("$.sinCambios").value(1))
+                .andExpect(jsonPath("$.entradas").value(1))
+                .andExpect(jsonPath("$.salidas").value(1))
+                .andExpect(jsonPath("$.rechazados").value(4))
+                .andExpect(jsonPath("$.rechazos[*].linea").value(contains(5, 6, 7, 8)));
+
+        assertEquals(15, cantidad(porId.getId()));
+        assertEquals(4, cantidad(porNombre.getId()));
+        assertEquals(10, cantidad(sinCambios.getId()));
+        assertEquals("ENTRADA:5", movimientoConciliacion(porId.getId()));
+        assertEquals("SALIDA:6", movimientoConciliacion(porNombre.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movimiento WHERE producto_id = ? AND motivo = ?",
+                Integer.class, sinCambios.getId(), ConciliacionStockService.MOTIVO));
+    }
+
+    @Test
+    void ndjsonPorIdYLineaInvalida() throws Exception {
+        Producto producto = crear("Conteo ndjson");
+        String ndjson = "{\"productoId\":" + producto.getId() + ",\"cantidadContada\":3}\n{no es json\n";
+
+        mockMvc.perform(post("/api/productos/conciliacion").param("formato", "ndjson")
+                        .contentType("application/x-ndjson").content(ndjson)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ajustados").value(1))
+                .andExpect(jsonPath("$.rechazos[0].linea").value(2));
+        assertEquals(3, cantidad(producto.getId()));
+    }
+
+    @Test
+    void bloqueQueFallaEnElFlushSeRechazaEntero() throws Exception {
+        Producto primero = crear("Conteo flush");
+        Producto segundo = crear("Conteo flush");
+        String csv = "productoId,cantidadContada\n" + primero.getId() + ",1\n" + segundo.getId() + ",2";
+
+        // Usuario más largo que la columna: el INSERT del movimiento falla al hacer flush
+        mockMvc.perform(post("/api/productos/conciliacion").contentType("text/csv").content(csv)
+                        .with(jwt().jwt(token -> token.subject("u".repeat(300))).authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ajustados").value(0))
+                .andExpect(jsonPath("$.rechazados").value(2))
+                .andExpect(jsonPath("$.rechazos[*].linea").value(contains(2, 3)));
+        assertEquals(10, cantidad(primero.getId()));
+        assertEquals(10, cantidad(segundo.getId()));
+    }
+
+    @Test
+    void cabeceraCsvInvalidaDa400() throws Exception {
+        mockMvc.perform(post("/api/productos/conciliacion").contentType("text/csv").content("id,cantidad\n1,5")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Producto crear(String nombre) {
+        return productoService.crearProducto(Producto.builder()
+                .nombre(nombre + " " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+    }
+
+    private int cantidad(Long id) {
+        return jdbcTemplate.queryForObject("SELECT cantidad_inicial FROM producto WHERE id = ?", Integer.class, id);
+    }
+
+    private String movimientoConciliacion(Long id) {
+        return jdbcTemplate.queryForObject("SELECT tipo || ':' || cantidad FROM movimiento WHERE producto_id = ? AND motivo = ? AND usuario = 'contador'",
+                String.class, id, ConciliacionStockService.MOTIVO);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.proyectofinal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ArchivoMovimientos;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Historial con meses archivados en ficheros: lo escrito se lee igual (varios grupos y nulos) y
+ * con incluirArchivados las páginas siguen en la base y continúan en el archivo con el mismo cursor.
+ * El particionado y el archivado desde PostgreSQL (V8, ArchivadorMovimientos) se prueban en MigracionesPostgresTest.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class HistorialArchivadoTest {
+
+    @TempDir
+    static Path directorio;
+
+    @DynamicPropertySource
+    static void directorioArchivo(DynamicPropertyRegistry registry) {
+        registry.add("movimientos.archivo.directorio", () -> directorio.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ArchivoMovimientos archivoMovimientos;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void ficheroArchivadoSeLeeIgualQueSeEscribio() throws Exception {
+        YearMonth mes = YearMonth.of(2020, 1);
+        LocalDateTime fin = mes.plusMonths(1).atDay(1).atStartOfDay();
+        List<MovimientoResumen> escritos = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            escritos.add(new MovimientoResumen((long) 100_000 - i, -1L - i % 7, "Producto " + i % 7, i % 2 == 0 ? null : "Cat",
+                    "usuario" + i % 3, i % 2 == 0 ? "ENTRADA" : "SALIDA", i, i % 3 == 0 ? null : "motivo ñ " + i,
+                    fin.minusSeconds(i * 60L).minusNanos(123_000)));
+        }
+
+        assertEquals(10_000, archivoMovimientos.archivar(mes, destino -> escritos.forEach(destino)));
+
+        List<MovimientoResumen> leidos = archivoMovimientos.buscarAntesDe(
+                movimiento -> movimiento.productoId() < 0, fin, Long.MAX_VALUE, null, 20_000);
+        assertEquals(escritos, leidos);
+        assertEquals(escritos.subList(1, 4), archivoMovimientos.buscarAntesDe(
+                movimiento -> movimiento.productoId() < 0, escritos.get(0).fechaMovimiento(), escritos.get(0).id(), null, 3));
+    }
+
+    @Test
+    void historialConArchivadosContinuaEnLosFicheros() throws Exception {
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre("Archivado " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+        productoService.ajustarCantidad(producto.getId(), 2, "entrada", "tester");
+        productoService.ajustarCantidad(producto.getId(), -1, "salida", "tester");
+
+        LocalDateTime inicio = YearMonth.of(2021, 3).atDay(1).atStartOfDay();
+        archivoMovimientos.archivar(YearMonth.of(2021, 3), destino -> {
+            for (int i = 3; i >= 1; i--) {
+                destino.accept(new MovimientoResumen((long) i, producto.getId(), producto.getNombre(), "Test",
+                        "tester", "ENTRADA", i, "archivado " + i, inicio.plusDays(i)));
+            }
+            destino.accept(new MovimientoResumen(0L, producto.getId() + 1, "Otro", "Test",
+                    "tester", "ENTRADA", 1, "de otro producto", inicio));
+        });
+
+        List<String> motivos = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            JsonNode pagina = objectMapper.readTree(mockMvc.perform(get("/api/movimientos/{productoId}", producto.getId())
+                            .param("size", "2")
+                            .param("incluirArchivados", "true")
+                            .param("cursor", cursor == null ? "" : cursor)
+                            .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            pagina.get("contenido").forEach(movimiento -> motivos.add(movimiento.get("motivo").asText()));
+            cursor = pagina.get("siguienteCursor").isNull() ? null : pagina.get("siguienteCursor").asText();
+            paginas++;
+        } while (cursor != null);
+
+        assertEquals(6, motivos.size(), motivos::toString);
+        assertEquals(List.of("archivado 3", "archivado 2", "archivado 1"), motivos.subList(3, 6));
+        assertTrue(paginas >= 3);
+
+        mockMvc.perform(get("/api/movimientos/{productoId}", producto.getId())
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido.length()").value(3));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.proyectofinal.controller;
+
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Reintentos con Idempotency-Key en la API de integración: la operación se ejecuta una vez y
+ * los reintentos, incluso simultáneos, reciben la respuesta original.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IdempotenciaIntegracionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reintentoDeAltaDevuelveLaRespuestaOriginal() throws Exception {
+        String clave = "alta-" + System.nanoTime();
+        String cuerpo = "{\"nombre\":\"Idempotente " + clave + "\",\"categoria\":\"Test\",\"precio\":2.0,\"cantidadInicial\":5}";
+
+        String primera = mockMvc.perform(admin(post("/api/integration/productos"), clave).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(admin(post("/api/integration/productos"), clave).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(result -> assertEquals(primera, result.getResponse().getContentAsString()));
+
+        mockMvc.perform(admin(post("/api/integration/productos"), clave).content(cuerpo.replace("2.0", "3.0")))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void ajustesSimultaneosConLaMismaClaveRegistranUnSoloMovimiento() throws Exception {
+        Long id = productoService.crearProducto(Producto.builder()
+                .nombre("Idempotente ajuste " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester").getId();
+        String clave = "ajuste-" + System.nanoTime();
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> reintentos = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reintentos.add(() -> mockMvc.perform(admin(patch("/api/integration/productos/{id}/cantidad", id), clave)
+                                .param("delta", "3"))
+                        .andReturn().getResponse().getStatus());
+            }
+            for (Future<Integer> estado : ejecutor.invokeAll(reintentos)) {
+                assertEquals(200, estado.get());
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+
+        assertEquals(13, productoService.obtenerProductoPorId(id).getCantidadInicial());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM movimiento WHERE producto_id = ? AND tipo = 'ENTRADA'", Integer.class, id));
+    }
+
+    @Test
+    void sinClaveCadaPeticionSeEjecuta() throws Exception {
+        String nombre = "Sin clave " + System.nanoTime();
+        String cuerpo = "{\"nombre\":\"" + nombre + "\",\"categoria\":\"Test\",\"precio\":2.0,\"cantidadInicial\":5}";
+        mockMvc.perform(admin(post("/api/integration/productos"), null).content(cuerpo))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.nombre").value(nombre));
+        mockMvc.perform(admin(post("/api/integration/productos"), null).content(cuerpo))
+                .andExpect(status().isConflict());
+    }
+
+    private MockHttpServletRequestBuilder admin(MockHttpServletRequestBuilder request, String clave) {
+        request.with(jwt().jwt(token -> token.subject("integracion")).authorities(new SimpleGrantedAuthority("ADMIN")))
+                .contentType(MediaType.APPLICATION_JSON);
+        return clave != null ? request.header("Idempotency-Key", clave) : request;
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.proyectofinal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exportación del historial: formatos NDJSON y CSV, escapado del CSV, filtros y que el
+ * entityManager.clear() de cada lote de 500 no corta ni repite filas del cursor.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class MovimientoExportTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private MovimientoRepository movimientoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String usuario;
+
+    @BeforeEach
+    void crearUsuario() {
+        usuario = "export-" + System.nanoTime();
+    }
+
+    @Test
+    void ndjsonIncluyeTodasLasFilasAunqueSeLimpieLaSesionCada500() throws Exception {
+        Producto producto = crearProducto("Exportado " + System.nanoTime(), "Test");
+        List<Movimiento> movimientos = new ArrayList<>();
+        for (int i = 0; i < 1203; i++) {
+            // Varias filas con la misma fecha para que el desempate por id también cuente
+            movimientos.add(movimiento(producto, i % 2 == 0 ? "ENTRADA" : "SALIDA", i, "lote " + i, BASE.minusMinutes(i / 3)));
+        }
+        List<Long> esperados = guardar(movimientos).stream()
+                .sorted(Comparator.comparing(Movimiento::getFechaMovimiento).thenComparing(Movimiento::getId).reversed())
+                .map(Movimiento::getId)
+                .toList();
+
+        MvcResult resultado = exportar(get("/api/movimientos/export").param("usuario", usuario));
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, resultado.getResponse().getContentType());
+
+        List<JsonNode> filas = leerNdjson(resultado);
+        assertEquals(esperados, filas.stream().map(fila -> fila.get("id").asLong()).toList());
+        JsonNode primera = filas.get(0);
+        assertEquals(producto.getId(), primera.get("productoId").asLong());
+        assertEquals(producto.getNombre(), primera.get("productoNombre").asText());
+        // "lote 0" a "lote 2" tienen la misma fecha: va primero el id más alto
+        assertEquals("lote 2", primera.get("motivo").asText());
+    }
+
+    @Test
+    void csvEscapaComasComillasYSaltosDeLinea() throws Exception {
+        Producto producto = crearProducto("Mesa \"Roble\", 2m " + System.nanoTime(), "Salón");
+        List<Movimiento> guardados = guardar(List.of(
+                movimiento(producto, "ENTRADA", 4, "línea 1\nlínea 2", BASE),
+                movimiento(producto, "SALIDA", 1, null, BASE.minusHours(1))));
+
+        MvcResult resultado = exportar(get("/api/movimientos/export")
+                .param("formato", "csv")
+                .param("usuario", usuario));
+        assertEquals("text/csv", resultado.getResponse().getContentType());
+
+        String nombre = "\"" + producto.getNombre().replace("\"", "\"\"") + "\"";
+        String esperado = "id,productoId,productoNombre,productoCategoria,usuario,tipo,cantidad,motivo,fechaMovimiento\n"
+                + guardados.get(0).getId() + "," + producto.getId() + "," + nombre + ",Salón," + usuario
+                + ",ENTRADA,4,\"línea 1\nlínea 2\"," + BASE + "\n"
+                + guardados.get(1).getId() + "," + producto.getId() + "," + nombre + ",Salón," + usuario
+                + ",SALIDA,1,," + BASE.minusHours(1) + "\n";
+        assertEquals(esperado, resultado.getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void aplicaLosFiltros() throws Exception {
+        Producto producto = crearProducto("Filtrado " + System.nanoTime(), "Test");
+        Producto otro = crearProducto("Filtrado otro " + System.nanoTime(), "Test");
+        guardar(List.of(
+                movimiento(producto, "ENTRADA", 1, "a", BASE),
+                movimiento(producto, "SALIDA", 1, "b", BASE.minusDays(1)),
+                movimiento(producto, "SALIDA", 1, "c", BASE.minusDays(2)),
+                movimiento(otro, "SALIDA", 1, "d", BASE.minusDays(1))));
+
+        assertEquals(List.of("a", "b", "c"), motivos(get("/api/movimientos/export")
+                .param("usuario", usuario)
+                .param("productoId", producto.getId().toString())));
+        assertEquals(List.of("d", "b"), motivos(get("/api/movimientos/export")
+                .param("usuario", usuario)
+                .param("tipo", "SALIDA")
+                .param("desde", BASE.minusDays(1).toString())));
+        assertEquals(List.of("b", "c"), motivos(get("/api/movimientos/export")
+                .param("usuario", usuario)
+                .param("productoId", producto.getId().toString())
+                .param("hasta", BASE.minusDays(1).toString())));
+        assertEquals(List.of(), motivos(get("/api/movimientos/export")
+                .param("usuario", usuario)
+                .param("productoId", otro.getId().toString())
+                .param("tipo", "ENTRADA")));
+
+        mockMvc.perform(conRol(get("/api/movimientos/export").param("formato", "xml")))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MvcResult exportar(MockHttpServletRequestBuilder peticion) throws Exception {
+        MvcResult iniciado = mockMvc.perform(conRol(peticion))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(iniciado))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, startsWith("attachment")))
+                .andReturn();
+    }
+
+    private List<String> motivos(MockHttpServletRequestBuilder request) throws Exception {
+        return leerNdjson(exportar(request)).stream().map(fila -> fila.get("motivo").asText()).toList();
+    }
+
+    private List<JsonNode> leerNdjson(MvcResult resultado) throws Exception {
+        List<JsonNode> filas = new ArrayList<>();
+        for (String linea : resultado.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            if (!linea.isEmpty()) {
+                filas.add(objectMapper.readTree(linea));
+            }
+        }
+        return filas;
+    }
+
+    private Producto crearProducto(String nombre, String categoria) {
+        return productoService.crearProducto(Producto.builder()
+                .nombre(nombre)
+                .categoria(categoria)
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+    }
+
+    private Movimiento movimiento(Producto producto, String tipo, int cantidad, String motivo, LocalDateTime fecha) {
+        return Movimiento.builder()
+                .producto(producto)
+                .usuario(usuario)
+                .tipo(tipo)
+                .cantidad(cantidad)
+                .motivo(motivo)
+                .fechaMovimiento(fecha)
+                .build();
+    }
+
+    private List<Movimiento> guardar(List<Movimiento> movimientos) {
+        return new TransactionTemplate(transactionManager).execute(estado -> movimientoRepository.saveAll(movimientos));
+    }
+
+    private MockHttpServletRequestBuilder conRol(MockHttpServletRequestBuilder request) {
+        return request.with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO")));
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.proyectofinal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Comprueba que los endpoints de historial resuelven el producto en la misma consulta
+ * (sin una SELECT extra por producto) contando las sentencias que prepara Hibernate.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class MovimientoStockControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+    private String usuario;
+    private Long productoId;
+
+    @BeforeEach
+    void crearHistorial() {
+        usuario = "historial-" + System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            Producto producto = productoService.crearProducto(Producto.builder()
+                    .nombre("Historial " + i + " " + System.nanoTime())
+                    .categoria("Test")
+                    .precio(5.0)
+                    .cantidadInicial(10)
+                    .build(), usuario);
+            productoService.ajustarCantidad(producto.getId(), 2, "entrada", usuario);
+            productoService.ajustarCantidad(producto.getId(), -1, "salida", usuario);
+            productoId = producto.getId();
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void historialPorProductoUsaUnaSolaConsulta() throws Exception {
+        mockMvc.perform(conRol(get("/api/movimientos/{productoId}", productoId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido.length()").value(3))
+                .andExpect(jsonPath("$.contenido[0].productoId").value(productoId))
+                .andExpect(jsonPath("$.contenido[0].producto").doesNotExist());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void historialPorUsuarioUsaUnaSolaConsulta() throws Exception {
+        mockMvc.perform(conRol(get("/api/movimientos/usuario/{usuario}", usuario)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido.length()").value(9))
+                .andExpect(jsonPath("$.contenido[0].productoNombre").exists());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void historialPorTipoUsaUnaSolaConsulta() throws Exception {
+        mockMvc.perform(conRol(get("/api/movimientos/tipo/{tipo}", "SALIDA")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].productoNombre").exists());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void historialPorUsuarioRecorrePaginasPorCursorSinHuecosNiDuplicados() throws Exception {
+        Set<Long> vistos = new HashSet<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/movimientos/usuario/{usuario}", usuario).param("size", "4");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String cuerpo = mockMvc.perform(conRol(request))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode pagina = objectMapper.readTree(cuerpo);
+            pagina.get("contenido").forEach(movimiento -> assertTrue(vistos.add(movimiento.get("id").asLong())));
+            cursor = pagina.get("siguienteCursor").isNull() ? null : pagina.get("siguienteCursor").asText();
+            paginas++;
+        } while (cursor != null);
+
+        assertEquals(9, vistos.size());
+        assertEquals(3, paginas);
+    }
+
+    @Test
+    void cursorInvalidoDevuelve400() throws Exception {
+        mockMvc.perform(conRol(get("/api/movimientos/tipo/{tipo}", "SALIDA").param("cursor", "no-es-un-cursor")))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MockHttpServletRequestBuilder conRol(MockHttpServletRequestBuilder request) {
+        return request.with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO")));
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.proyectofinal.controller;
+
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Feed SSE de movimientos: los movimientos confirmados llegan a los suscriptores y un cliente
+ * que reconecta con Last-Event-ID recibe solo lo que se perdió.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class MovimientoStreamTest {
+
+    private static final Pattern ID_EVENTO = Pattern.compile("id:(\\S+)\\nevent:movimiento");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Test
+    void movimientosConfirmadosLleganYSeRecuperanAlReconectar() throws Exception {
+        MvcResult suscripcion = suscribir(null);
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre("Stream " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+
+        String recibido = esperarContenido(suscripcion, "\"productoId\":" + producto.getId());
+        assertTrue(recibido.contains("\"tipo\":\"CREACION\""));
+        Matcher matcher = ID_EVENTO.matcher(recibido);
+        assertTrue(matcher.find());
+        String ultimoId = matcher.group(1);
+
+        productoService.ajustarCantidad(producto.getId(), 4, "entrada", "tester");
+
+        String repetido = esperarContenido(suscribir(ultimoId), "\"tipo\":\"ENTRADA\"");
+        assertFalse(repetido.contains("\"tipo\":\"CREACION\",\"cantidad\":10"));
+    }
+
+    @Test
+    void idDesconocidoRecibeReinicio() throws Exception {
+        esperarContenido(suscribir("otro-arranque-5"), "event:reinicio");
+    }
+
+    private MvcResult suscribir(String ultimoEventoId) throws Exception {
+        var peticion = get("/api/movimientos/stream")
+                .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO")));
+        if (ultimoEventoId != null) {
+            peticion.header("Last-Event-ID", ultimoEventoId);
+        }
+        return mockMvc.perform(peticion).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private String esperarContenido(MvcResult suscripcion, String esperado) throws Exception {
+        long limite = System.currentTimeMillis() + 5000;
+        String contenido = suscripcion.getResponse().getContentAsString();
+        while (!contenido.contains(esperado) && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            contenido = suscripcion.getResponse().getContentAsString();
+        }
+        assertTrue(contenido.contains(esperado), () -> "No llegó " + esperado);
+        return contenido;
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.proyectofinal.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.example.proyectofinal.services.VersionesProductos;
+import org.example.proyectofinal.utils.TransaccionUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET condicional de productos: con el ETag vigente se responde 304 sin ninguna consulta y
+ * cualquier escritura del servicio cambia el ETag del producto y del catálogo. Una lectura hecha
+ * justo cuando se publica el ETag nuevo ya recibe los datos confirmados, nunca los cacheados de antes.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductoControllerEtagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoSpyBean
+    private VersionesProductos versionesProductos;
+
+    private Statistics statistics;
+    private Long productoId;
+
+    @BeforeEach
+    void crearProducto() {
+        productoId = productoService.crearProducto(Producto.builder()
+                .nombre("Etag " + System.nanoTime())
+                .categoria("Test")
+                .precio(3.0)
+                .cantidadInicial(10)
+                .build(), "tester").getId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void productoSinCambiosResponde304SinConsultas() throws Exception {
+        String etag = mockMvc.perform(get("/api/productos/{id}", productoId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/productos/{id}", productoId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        productoService.ajustarCantidad(productoId, 5, "entrada", "tester");
+
+        String nuevoEtag = mockMvc.perform(get("/api/productos/{id}", productoId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, nuevoEtag);
+    }
+
+    @Test
+    void listadoCambiaDeEtagConCualquierEscritura() throws Exception {
+        String etag = mockMvc.perform(get("/api/productos/listar").param("size", "5"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/productos/listar").param("size", "5").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        productoService.eliminarProducto(productoId);
+
+        mockMvc.perform(get("/api/productos/listar").param("size", "5").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/integration/productos/listar").param("completo", "true").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void lecturaAlPublicarseElEtagNuevoVeLosDatosConfirmados() throws Exception {
+        String etagProducto = mockMvc.perform(get("/api/productos/{id}", productoId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String etagCatalogo = mockMvc.perform(get("/api/productos/listar").param("completo", "true"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // GET condicionales lanzados desde otro hilo en cuanto el commit publica las versiones nuevas
+        List<MvcResult> lecturas = new ArrayList<>();
+        doAnswer(invocacion -> {
+            invocacion.callRealMethod();
+            TransaccionUtils.despuesDelCommit(() -> lecturas.addAll(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return List.of(
+                            mockMvc.perform(get("/api/productos/{id}", productoId)
+                                    .header(HttpHeaders.IF_NONE_MATCH, etagProducto)).andReturn(),
+                            mockMvc.perform(get("/api/productos/listar").param("completo", "true")
+                                    .header(HttpHeaders.IF_NONE_MATCH, etagCatalogo)).andReturn());
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }).orTimeout(10, TimeUnit.SECONDS).join()));
+            return null;
+        }).when(versionesProductos).registrarCambio(anyCollection());
+
+        productoService.ajustarCantidad(productoId, 7, "entrada", "tester");
+
+        assertEquals(2, lecturas.size());
+        MvcResult producto = lecturas.get(0);
+        assertEquals(200, producto.getResponse().getStatus());
+        jsonPath("$.cantidadInicial").value(17).match(producto);
+        MvcResult listado = lecturas.get(1);
+        assertEquals(200, listado.getResponse().getStatus());
+        jsonPath("$[?(@.id == " + productoId + ")].cantidadInicial").value(hasItem(17)).match(listado);
+
+        // El ETag devuelto junto a los datos nuevos es el que ahora responde 304
+        mockMvc.perform(get("/api/productos/{id}", productoId)
+                        .header(HttpHeaders.IF_NONE_MATCH, producto.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/productos/listar").param("completo", "true")
+                        .header(HttpHeaders.IF_NONE_MATCH, listado.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+}
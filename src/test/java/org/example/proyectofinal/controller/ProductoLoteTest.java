@@ -0,0 +1,188 @@
+package org.example.proyectofinal.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.proyectofinal.dto.ResultadoLote;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Alta de productos en lote: un resultado por elemento en el orden de la petición, nombres
+ * repetidos dentro del lote o ya existentes, lotes que pasan de un bloque de escritura y el
+ * máximo de elementos por petición.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductoLoteTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String prefijo;
+
+    @BeforeEach
+    void crearPrefijo() {
+        prefijo = "Lote " + System.nanoTime() + " ";
+    }
+
+    @Test
+    void devuelveUnResultadoPorElementoEnElOrdenRecibido() throws Exception {
+        productoService.crearProducto(Producto.builder()
+                .nombre(prefijo + "existente")
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(1)
+                .build(), "tester");
+
+        JsonNode resultados = leer(lote(List.of(
+                producto(prefijo + "mesa", 2.0, 4),
+                producto(prefijo + "sin precio", 0.0, 1),
+                producto("  " + prefijo.toUpperCase() + "MESA ", 3.0, 1),
+                producto(prefijo.toLowerCase() + "EXISTENTE", 1.0, 1),
+                producto(prefijo + "silla", 1.5, 2)))
+                .andExpect(status().isOk()));
+
+        assertEquals(5, resultados.size());
+        for (int i = 0; i < resultados.size(); i++) {
+            assertEquals(i, resultados.get(i).get("indice").asInt());
+        }
+        assertCreado(resultados.get(0));
+        assertRechazado(resultados.get(1), "El precio debe ser mayor a cero");
+        assertRechazado(resultados.get(2), "Nombre repetido dentro del lote");
+        assertRechazado(resultados.get(3), "Ya existe un producto con el nombre");
+        assertCreado(resultados.get(4));
+
+        // El existente y las dos altas del lote, cada una con su movimiento de creación
+        assertEquals(3, contarProductos());
+        Long idMesa = resultados.get(0).get("id").asLong();
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT cantidad_inicial FROM producto WHERE id = ?", Integer.class, idMesa));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM movimiento WHERE producto_id = ? AND tipo = 'CREACION' AND usuario = 'user'",
+                Integer.class, idMesa));
+    }
+
+    @Test
+    void loteMayorQueUnBloqueDeEscrituraCreaTodos() throws Exception {
+        List<Map<String, Object>> productos = new ArrayList<>();
+        for (int i = 0; i < 1203; i++) {
+            productos.add(producto(prefijo + i, 1.0, i % 10));
+        }
+
+        JsonNode resultados = leer(lote(productos).andExpect(status().isOk()));
+
+        Set<Long> ids = new HashSet<>();
+        resultados.forEach(resultado -> {
+            assertEquals(ResultadoLote.CREADO, resultado.get("estado").asText());
+            assertTrue(ids.add(resultado.get("id").asLong()));
+        });
+        assertEquals(1203, ids.size());
+        assertEquals(1203, contarProductos());
+        assertEquals(prefijo + "1202", jdbcTemplate.queryForObject("SELECT nombre FROM producto WHERE id = ?",
+                String.class, resultados.get(1202).get("id").asLong()));
+    }
+
+    @Test
+    void rechazaLotesVaciosODemasiadoGrandes() throws Exception {
+        List<Map<String, Object>> productos = new ArrayList<>();
+        for (int i = 0; i <= ProductoService.TAMANIO_LOTE_MAXIMO; i++) {
+            productos.add(producto(prefijo + i, 1.0, 1));
+        }
+        lote(productos)
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("El lote no puede superar " + ProductoService.TAMANIO_LOTE_MAXIMO + " productos"));
+        assertEquals(0, contarProductos());
+
+        lote(List.of()).andExpect(status().isBadRequest());
+
+        List<Producto> demasiados = new ArrayList<>();
+        for (int i = 0; i <= ProductoService.TAMANIO_LOTE_MAXIMO; i++) {
+            demasiados.add(Producto.builder().nombre(prefijo + i).categoria("Test").precio(1.0).build());
+        }
+        assertThrows(IllegalArgumentException.class, () -> productoService.crearProductosEnLote(demasiados, "tester"));
+        assertEquals(0, contarProductos());
+    }
+
+    @Test
+    void soloAdminPuedeCrearLotes() throws Exception {
+        mockMvc.perform(post("/api/integration/productos/batch")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(producto(prefijo + "empleado", 1.0, 1)))))
+                .andExpect(status().isForbidden());
+        assertEquals(0, contarProductos());
+    }
+
+    private ResultActions lote(List<Map<String, Object>> productos) throws Exception {
+        return mockMvc.perform(post("/api/integration/productos/batch")
+                .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(productos)));
+    }
+
+    private JsonNode leer(ResultActions respuesta) throws Exception {
+        return objectMapper.readTree(respuesta.andReturn().getResponse().getContentAsString());
+    }
+
+    private Map<String, Object> producto(String nombre, double precio, int cantidad) {
+        Map<String, Object> producto = new LinkedHashMap<>();
+        producto.put("nombre", nombre);
+        producto.put("categoria", "Test");
+        producto.put("precio", precio);
+        producto.put("cantidadInicial", cantidad);
+        return producto;
+    }
+
+    private int contarProductos() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM producto WHERE nombre_normalizado LIKE ?",
+                Integer.class, prefijo.toLowerCase() + "%");
+    }
+
+    private static void assertCreado(JsonNode resultado) {
+        assertEquals(ResultadoLote.CREADO, resultado.get("estado").asText());
+        assertNotNull(resultado.get("id").numberValue());
+        assertTrue(resultado.get("error").isNull());
+    }
+
+    private static void assertRechazado(JsonNode resultado, String error) {
+        assertEquals(ResultadoLote.RECHAZADO, resultado.get("estado").asText());
+        assertTrue(resultado.get("id").isNull());
+        assertTrue(resultado.get("error").asText().startsWith(error), resultado::toString);
+    }
+}
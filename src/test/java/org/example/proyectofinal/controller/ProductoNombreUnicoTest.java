@@ -0,0 +1,116 @@
+package org.example.proyectofinal.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unicidad de nombres por índice único normalizado: el alta no consulta antes de insertar,
+ * los duplicados (sin distinguir mayúsculas) responden 409 y, entre altas simultáneas con el
+ * mismo nombre, solo una se crea.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductoNombreUnicoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void altaSinConsultaPreviaYDuplicadoSinDistinguirMayusculasDa409() throws Exception {
+        String nombre = "Nombre único " + System.nanoTime();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(conRol(post("/api/productos")).content(cuerpo(nombre)))
+                .andExpect(status().isCreated());
+        assertEquals(0, statistics.getQueryExecutionCount());
+
+        mockMvc.perform(conRol(post("/api/productos")).content(cuerpo("  " + nombre.toUpperCase() + " ")))
+                .andExpect(status().isConflict());
+        mockMvc.perform(conRol(post("/api/integration/productos")).content(cuerpo(nombre.toLowerCase())))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void renombrarAUnNombreExistenteDa409() throws Exception {
+        String nombre = "Renombrar " + System.nanoTime();
+        mockMvc.perform(conRol(post("/api/productos")).content(cuerpo(nombre)))
+                .andExpect(status().isCreated());
+        String otro = mockMvc.perform(conRol(post("/api/productos")).content(cuerpo(nombre + " otro")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = Long.valueOf(otro.replaceAll(".*\"id\":(\\d+).*", "$1"));
+
+        mockMvc.perform(conRol(put("/api/productos/{id}", id)).content(cuerpo(nombre.toUpperCase())))
+                .andExpect(status().isConflict());
+        mockMvc.perform(conRol(put("/api/productos/{id}", id)).content(cuerpo(nombre + " renombrado")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombreNormalizado").doesNotExist());
+    }
+
+    @Test
+    void altasSimultaneasConElMismoNombreCreanUnSoloProducto() throws Exception {
+        String nombre = "Simultáneo " + System.nanoTime();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        List<Integer> estados = new ArrayList<>();
+        try {
+            List<Callable<Integer>> altas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String variante = i % 2 == 0 ? nombre : nombre.toUpperCase();
+                altas.add(() -> mockMvc.perform(conRol(post("/api/productos")).content(cuerpo(variante)))
+                        .andReturn().getResponse().getStatus());
+            }
+            for (Future<Integer> estado : ejecutor.invokeAll(altas)) {
+                estados.add(estado.get());
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+
+        assertEquals(1, estados.stream().filter(estado -> estado == 201).count(), estados::toString);
+        assertEquals(7, estados.stream().filter(estado -> estado == 409).count(), estados::toString);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM producto WHERE nombre_normalizado = ?", Integer.class, nombre.toLowerCase()));
+    }
+
+    private static String cuerpo(String nombre) {
+        return "{\"nombre\":\"" + nombre + "\",\"categoria\":\"Test\",\"precio\":2.0,\"cantidadInicial\":5}";
+    }
+
+    private MockHttpServletRequestBuilder conRol(MockHttpServletRequestBuilder request) {
+        return request.with(jwt().authorities(new SimpleGrantedAuthority("ADMIN")))
+                .contentType(MediaType.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.proyectofinal.controller;
+
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.services.AlertasStockBajo;
+import org.example.proyectofinal.services.ProductoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Stock bajo: cada cambio de stock o de stock mínimo actualiza la lista en memoria de
+ * /bajo-stock y los cruces del umbral se publican en el flujo SSE de movimientos.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StockBajoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private AlertasStockBajo alertasStockBajo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void cambiosDeStockActualizanLaListaYPublicanLosCruces() throws Exception {
+        MvcResult suscripcion = mockMvc.perform(get("/api/movimientos/stream")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(request().asyncStarted()).andReturn();
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre("Umbral " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+        int id = producto.getId().intValue();
+        bajoStock().andExpect(jsonPath("$[*].id").value(not(hasItem(id))));
+
+        productoService.ajustarCantidad(producto.getId(), -6, "salida", "tester");
+        bajoStock().andExpect(jsonPath("$[?(@.id == " + id + ")].cantidad").value(hasItem(4)));
+        esperarContenido(suscripcion, "event:stock-bajo\ndata:{\"id\":" + id + ",");
+
+        productoService.actualizarCantidad(producto.getId(), 8, "ENTRADA", "reposición", "tester");
+        bajoStock().andExpect(jsonPath("$[*].id").value(not(hasItem(id))));
+        esperarContenido(suscripcion, "event:stock-repuesto\ndata:{\"id\":" + id + ",");
+
+        producto.setStockMinimo(20);
+        productoService.actualizarProducto(producto.getId(), producto, "tester");
+        bajoStock().andExpect(jsonPath("$[?(@.id == " + id + ")].stockMinimo").value(hasItem(20)));
+
+        productoService.eliminarProducto(producto.getId());
+        bajoStock().andExpect(jsonPath("$[*].id").value(not(hasItem(id))));
+    }
+
+    @Test
+    void altaBajoMinimoValidacionYCargaInicial() throws Exception {
+        mockMvc.perform(post("/api/productos").contentType(MediaType.APPLICATION_JSON)
+                        .content(cuerpo("Mínimo negativo", 5, -1))
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+
+        String creado = mockMvc.perform(post("/api/productos").contentType(MediaType.APPLICATION_JSON)
+                        .content(cuerpo("Escaso", 2, 3))
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.stockMinimo").value(3))
+                .andReturn().getResponse().getContentAsString();
+        int id = Integer.parseInt(creado.replaceAll(".*\"id\":(\\d+).*", "$1"));
+        bajoStock().andExpect(jsonPath("$[*].id").value(hasItem(id)));
+
+        // Cambio hecho fuera de la aplicación: lo recoge la carga del arranque
+        Producto otro = productoService.crearProducto(Producto.builder()
+                .nombre("Carga inicial " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+        jdbcTemplate.update("UPDATE producto SET stock_minimo = 50 WHERE id = ?", otro.getId());
+        alertasStockBajo.reconstruir();
+        bajoStock().andExpect(jsonPath("$[*].id").value(hasItem(otro.getId().intValue())))
+                .andExpect(jsonPath("$[*].id").value(hasItem(id)));
+    }
+
+    @Test
+    void actualizarSinStockMinimoConservaElActual() throws Exception {
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre("Sin mínimo " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .stockMinimo(12)
+                .build(), "tester");
+
+        // Como el formulario de productos, que no envía stockMinimo
+        mockMvc.perform(put("/api/productos/{id}", producto.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\":\"" + producto.getNombre() + "\",\"categoria\":\"Test\",\"precio\":3.0,\"cantidadInicial\":11}")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.precio").value(3.0))
+                .andExpect(jsonPath("$.stockMinimo").value(12));
+        bajoStock().andExpect(jsonPath("$[?(@.id == " + producto.getId() + ")].stockMinimo").value(hasItem(12)));
+
+        mockMvc.perform(put("/api/productos/{id}", producto.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nombre\":\"" + producto.getNombre() + "\",\"categoria\":\"Test\",\"precio\":3.0," +
+                                "\"cantidadInicial\":11,\"stockMinimo\":-1}")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isBadRequest());
+        assertEquals(12, jdbcTemplate.queryForObject("SELECT stock_minimo FROM producto WHERE id = ?", Integer.class, producto.getId()));
+    }
+
+    private ResultActions bajoStock() throws Exception {
+        return mockMvc.perform(get("/api/productos/bajo-stock")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                .andExpect(status().isOk());
+    }
+
+    private static String cuerpo(String nombre, int cantidad, int stockMinimo) {
+        return "{\"nombre\":\"" + nombre + " " + System.nanoTime() + "\",\"categoria\":\"Test\",\"precio\":2.0," +
+                "\"cantidadInicial\":" + cantidad + ",\"stockMinimo\":" + stockMinimo + "}";
+    }
+
+    private static void esperarContenido(MvcResult suscripcion, String esperado) throws Exception {
+        long limite = System.currentTimeMillis() + 5000;
+        String contenido = suscripcion.getResponse().getContentAsString();
+        while (!contenido.contains(esperado) && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            contenido = suscripcion.getResponse().getContentAsString();
+        }
+        assertTrue(contenido.contains(esperado), () -> "No llegó " + esperado);
+    }
+}
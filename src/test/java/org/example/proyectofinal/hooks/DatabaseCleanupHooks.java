@@ -2,7 +2,9 @@ package org.example.proyectofinal.hooks;
 
 import io.cucumber.java.After;
 import io.cucumber.java.Before;
+import org.example.proyectofinal.services.IndiceBusquedaProductos;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,12 @@ public class DatabaseCleanupHooks {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private IndiceBusquedaProductos indiceBusquedaProductos;
+
     @Before
     @Transactional
     public void cleanDatabase() {
@@ -53,6 +61,10 @@ public class DatabaseCleanupHooks {
             // Log pero no fallar completamente - algunos tests pueden no necesitar limpieza
             System.err.println("Warning: Could not clean database: " + e.getMessage());
         }
+
+        // Las tablas se vaciaron por fuera del servicio, así que la cache y el índice de búsqueda quedan obsoletos
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        indiceBusquedaProductos.reconstruir();
     }
 
     @After
@@ -0,0 +1,176 @@
+package org.example.proyectofinal.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.dto.ProductoBajoStock;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de estrés del ajuste atómico de stock: muchas entradas y salidas
+ * concurrentes sobre el mismo producto no deben perder actualizaciones, y la lista en memoria
+ * de stock bajo debe acabar igual que la base de datos aunque los commits terminen desordenados.
+ * La salida sin stock la rechaza el propio UPDATE condicional, sin leer ni bloquear antes el producto.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AjusteStockConcurrenteTest {
+
+    private static final int HILOS = 8;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private MovimientoRepository movimientoRepository;
+
+    @Autowired
+    private AlertasStockBajo alertasStockBajo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void ajustesConcurrentesNoPierdenActualizaciones() throws Exception {
+        Producto producto = crearProducto("Stress ajuste", 1000);
+        int operacionesPorHilo = 50;
+
+        List<Boolean> resultados = ejecutarConcurrentemente(HILOS * operacionesPorHilo, i -> {
+            // Por cada salida de 1 hay dos entradas de 1
+            int delta = i % 3 == 0 ? -1 : 1;
+            productoService.ajustarCantidad(producto.getId(), delta, "stress", "tester");
+            return true;
+        });
+
+        long salidas = resultados.size() / 3 + (resultados.size() % 3 == 0 ? 0 : 1);
+        long entradas = resultados.size() - salidas;
+        Producto actualizado = productoRepository.findById(producto.getId()).orElseThrow();
+        assertEquals(1000 + entradas - salidas, actualizado.getCantidadInicial());
+        assertEquals(resultados.size(), contarMovimientos(producto.getId(), "ENTRADA") + contarMovimientos(producto.getId(), "SALIDA"));
+    }
+
+    @Test
+    void salidasConcurrentesNoVendenMasDelStockDisponible() throws Exception {
+        Producto producto = crearProducto("Stress sobreventa", 10);
+
+        List<Boolean> resultados = ejecutarConcurrentemente(50, i -> {
+            try {
+                productoService.ajustarCantidad(producto.getId(), -1, "stress", "tester");
+                return true;
+            } catch (IllegalStateException ex) {
+                return false;
+            }
+        });
+
+        assertEquals(10, resultados.stream().filter(Boolean::booleanValue).count());
+        assertEquals(0, productoRepository.findById(producto.getId()).orElseThrow().getCantidadInicial());
+        assertEquals(10, contarMovimientos(producto.getId(), "SALIDA"));
+    }
+
+    @Test
+    void salidaSinStockLaRechazaElUpdateSinCargarElProducto() {
+        Producto producto = crearProducto("Sin bloqueo", 3);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        assertThrows(IllegalStateException.class, () -> productoService.ajustarCantidad(producto.getId(), -4, "salida", "tester"));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertThrows(RuntimeException.class, () -> productoService.ajustarCantidad(-1L, -1, "salida", "tester"));
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        assertEquals(0, productoService.ajustarCantidad(producto.getId(), -3, "salida", "tester").getCantidadInicial());
+        assertEquals(0, productoRepository.findById(producto.getId()).orElseThrow().getCantidadInicial());
+        assertEquals(1, contarMovimientos(producto.getId(), "SALIDA"));
+    }
+
+    @Test
+    void listaDeStockBajoCoincideConLaBaseTrasAjustesConcurrentes() throws Exception {
+        // Cantidad inicial igual al mínimo: las entradas y salidas cruzan el umbral continuamente
+        Producto producto = crearProducto("Stress umbral", 5);
+        for (int ronda = 0; ronda < 5; ronda++) {
+            int desfase = ronda;
+            ejecutarConcurrentemente(200, i -> {
+                int delta = (i + desfase) % 2 == 0 ? 1 : -1;
+                try {
+                    productoService.ajustarCantidad(producto.getId(), delta, "stress umbral", "tester");
+                    return true;
+                } catch (IllegalStateException ex) {
+                    return false;
+                }
+            });
+
+            int cantidad = productoRepository.findById(producto.getId()).orElseThrow().getCantidadInicial();
+            Optional<ProductoBajoStock> enLista = alertasStockBajo.listar().stream()
+                    .filter(p -> p.id().equals(producto.getId()))
+                    .findFirst();
+            assertEquals(cantidad < 5, enLista.isPresent(), "cantidad " + cantidad + " en la ronda " + ronda);
+            enLista.ifPresent(p -> assertEquals(cantidad, p.cantidad()));
+        }
+    }
+
+    private Producto crearProducto(String nombre, int cantidad) {
+        return productoService.crearProducto(Producto.builder()
+                .nombre(nombre + " " + System.nanoTime())
+                .categoria("Test")
+                .precio(10.0)
+                .cantidadInicial(cantidad)
+                .build());
+    }
+
+    private long contarMovimientos(Long productoId, String tipo) {
+        return movimientoRepository.findByProducto_IdOrderByFechaMovimientoDesc(productoId).stream()
+                .map(Movimiento::getTipo)
+                .filter(tipo::equals)
+                .count();
+    }
+
+    private interface Operacion {
+        Boolean ejecutar(int indice) throws Exception;
+    }
+
+    private List<Boolean> ejecutarConcurrentemente(int operaciones, Operacion operacion) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch inicio = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futuros = new ArrayList<>();
+            for (int i = 0; i < operaciones; i++) {
+                int indice = i;
+                Callable<Boolean> tarea = () -> {
+                    inicio.await();
+                    return operacion.ejecutar(indice);
+                };
+                futuros.add(executor.submit(tarea));
+            }
+            inicio.countDown();
+            List<Boolean> resultados = new ArrayList<>();
+            for (Future<Boolean> futuro : futuros) {
+                resultados.add(futuro.get(30, TimeUnit.SECONDS));
+            }
+            return resultados;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
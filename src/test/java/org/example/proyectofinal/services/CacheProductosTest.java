@@ -0,0 +1,189 @@
+package org.example.proyectofinal.services;
+
+import org.example.proyectofinal.config.CacheConfig;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Caches de lectura de ProductoService: las lecturas repetidas no llegan al repositorio, las
+ * cargas simultáneas de una misma clave se juntan (sync = true) y tras cada escritura, ya
+ * confirmada, la siguiente lectura por id, búsqueda o listado ve el cambio.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CacheProductosTest {
+
+    @MockitoSpyBean
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ConciliacionStockService conciliacionStockService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private String prefijo;
+    private String categoria;
+
+    @BeforeEach
+    void crearPrefijo() {
+        prefijo = "Cacheado " + System.nanoTime() + " ";
+        categoria = "Cat " + System.nanoTime();
+    }
+
+    @Test
+    void lecturasRepetidasSalenDeLaCache() {
+        Producto producto = crear(prefijo + "uno", 3);
+        productoService.obtenerProductoPorId(producto.getId());
+        productoService.buscarProductosPorNombre(prefijo, 50);
+        productoService.buscarProductosPorCategoria(categoria, 50);
+        productoService.listarProductos();
+        clearInvocations(productoRepository);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3, productoService.obtenerProductoPorId(producto.getId()).getCantidadInicial());
+            assertEquals(1, productoService.buscarProductosPorNombre(prefijo, 50).size());
+            assertEquals(1, productoService.buscarProductosPorCategoria(categoria, 50).size());
+            productoService.listarProductos();
+        }
+        verify(productoRepository, times(0)).findById(producto.getId());
+        verify(productoRepository, times(0)).findAllById(anyIterable());
+        verify(productoRepository, times(0)).findAll();
+    }
+
+    @Test
+    void cargasSimultaneasDeLaMismaClaveSeJuntan() throws Exception {
+        Producto producto = crear(prefijo + "simultaneo", 4);
+        cacheManager.getCache(CacheConfig.PRODUCTOS).evict(producto.getId());
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        doAnswer(invocacion -> {
+            cargando.countDown();
+            liberar.await(10, TimeUnit.SECONDS);
+            // El repositorio es un proxy de interfaz: no hay método real al que llamar desde el espía
+            return Optional.of(producto);
+        }).when(productoRepository).findById(producto.getId());
+
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Producto>> lecturas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lecturas.add(CompletableFuture.supplyAsync(() -> productoService.obtenerProductoPorId(producto.getId()), hilos));
+            }
+            assertTrue(cargando.await(5, TimeUnit.SECONDS));
+            // Deja que el resto de lecturas lleguen a la cache mientras la primera sigue cargando
+            Thread.sleep(200);
+            liberar.countDown();
+
+            Producto primero = lecturas.get(0).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<Producto> lectura : lecturas) {
+                assertSame(primero, lectura.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            liberar.countDown();
+            hilos.shutdownNow();
+        }
+        verify(productoRepository, times(1)).findById(producto.getId());
+    }
+
+    @Test
+    void cadaEscrituraSeVeEnLaSiguienteLectura() {
+        Producto primero = crear(prefijo + "primero", 10);
+        assertVisible(primero.getId(), prefijo + "primero", 10);
+
+        Producto segundo = crear(prefijo + "segundo", 20);
+        assertVisible(segundo.getId(), prefijo + "segundo", 20);
+        assertVisible(primero.getId(), prefijo + "primero", 10);
+
+        Producto cambios = Producto.builder().nombre(prefijo + "renombrado").categoria(categoria).precio(2.0).cantidadInicial(11).build();
+        productoService.actualizarProducto(primero.getId(), cambios, "tester");
+        assertVisible(primero.getId(), prefijo + "renombrado", 11);
+
+        productoService.actualizarCantidad(primero.getId(), 15, "ENTRADA", "recuento", "tester");
+        assertVisible(primero.getId(), prefijo + "renombrado", 15);
+
+        productoService.ajustarCantidad(primero.getId(), -3, "salida", "tester");
+        assertVisible(primero.getId(), prefijo + "renombrado", 12);
+
+        String csv = "productoId,cantidadContada\n" + primero.getId() + ",7\n";
+        conciliacionStockService.conciliar(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ConciliacionStockService.Formato.CSV, "tester");
+        assertVisible(primero.getId(), prefijo + "renombrado", 7);
+
+        Long tercero = productoService.crearProductosEnLote(List.of(Producto.builder()
+                .nombre(prefijo + "tercero").categoria(categoria).precio(1.0).cantidadInicial(30).build()), "tester").get(0).id();
+        assertVisible(tercero, prefijo + "tercero", 30);
+
+        productoService.eliminarProducto(segundo.getId(), ProductoService.ModoEliminacion.DIFERIDO);
+        assertNoVisible(segundo.getId());
+
+        productoService.eliminarProducto(tercero);
+        assertNoVisible(tercero);
+
+        productoService.eliminarProductos(List.of(primero.getId()), ProductoService.ModoEliminacion.INMEDIATO);
+        assertNoVisible(primero.getId());
+    }
+
+    private Producto crear(String nombre, int cantidad) {
+        return productoService.crearProducto(Producto.builder()
+                .nombre(nombre)
+                .categoria(categoria)
+                .precio(1.0)
+                .cantidadInicial(cantidad)
+                .build(), "tester");
+    }
+
+    // Cada lectura también deja la entrada en la cache para la escritura siguiente
+    private void assertVisible(Long id, String nombre, int cantidad) {
+        Producto porId = productoService.obtenerProductoPorId(id);
+        assertEquals(nombre, porId.getNombre());
+        assertEquals(cantidad, porId.getCantidadInicial());
+        for (List<Producto> lectura : List.of(productoService.buscarProductosPorNombre(prefijo, 50),
+                productoService.buscarProductosPorCategoria(categoria, 50),
+                productoService.listarProductos())) {
+            Producto encontrado = lectura.stream().filter(producto -> producto.getId().equals(id)).findFirst().orElseThrow();
+            assertEquals(nombre, encontrado.getNombre());
+            assertEquals(cantidad, encontrado.getCantidadInicial());
+        }
+    }
+
+    private void assertNoVisible(Long id) {
+        assertThrows(RuntimeException.class, () -> productoService.obtenerProductoPorId(id));
+        for (List<Producto> lectura : List.of(productoService.buscarProductosPorNombre(prefijo, 50),
+                productoService.buscarProductosPorCategoria(categoria, 50),
+                productoService.listarProductos())) {
+            assertTrue(lectura.stream().noneMatch(producto -> producto.getId().equals(id)));
+        }
+    }
+}
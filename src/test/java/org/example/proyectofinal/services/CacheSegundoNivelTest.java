@@ -0,0 +1,133 @@
+package org.example.proyectofinal.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.config.CacheConfig;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache de segundo nivel de Producto y cache de consultas de la búsqueda por categoría, que sin el
+ * índice en memoria va a la base de datos: las escrituras de ProductoService invalidan lo cacheado.
+ * El historial resuelve el producto por JOIN en la proyección, sin una SELECT por fila.
+ */
+@SpringBootTest(properties = "productos.busqueda.indice-memoria=false")
+@ActiveProfiles("test")
+class CacheSegundoNivelTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private MovimientoHistorialService movimientoHistorialService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void obtenerEstadisticas() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void historialNoRepiteSelectPorProducto() {
+        String usuario = "l2-" + System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            Producto producto = productoService.crearProducto(nuevoProducto("Historial L2 " + i), usuario);
+            productoService.actualizarCantidad(producto.getId(), 20, "ENTRADA", "reposición", usuario);
+        }
+
+        statistics.clear();
+        assertEquals(6, movimientoHistorialService.listarPorUsuario(usuario, null, 50, false).contenido().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void escriturasInvalidanLaEntidadCacheada() {
+        Producto producto = productoService.crearProducto(nuevoProducto("Invalidación L2"), "tester");
+        productoRepository.findById(producto.getId());
+
+        statistics.clear();
+        productoRepository.findById(producto.getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        producto.setNombre(producto.getNombre() + " editado");
+        productoService.actualizarProducto(producto.getId(), producto, "tester");
+        assertEquals(producto.getNombre(), productoRepository.findById(producto.getId()).orElseThrow().getNombre());
+
+        assertEquals(15, productoService.ajustarCantidad(producto.getId(), 5, "entrada", "tester").getCantidadInicial());
+        assertEquals(15, productoRepository.findById(producto.getId()).orElseThrow().getCantidadInicial());
+    }
+
+    @Test
+    void ajusteDeStockSoloCambiaSuProductoEnLaCache() {
+        Producto ajustado = productoService.crearProducto(nuevoProducto("Ajuste L2"), "tester");
+        Producto vecino = productoService.crearProducto(nuevoProducto("Vecino L2"), "tester");
+        productoRepository.findById(vecino.getId());
+
+        productoService.ajustarCantidad(ajustado.getId(), -4, "salida", "tester");
+
+        statistics.clear();
+        assertEquals(10, productoRepository.findById(vecino.getId()).orElseThrow().getCantidadInicial());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Solo la entrada del ajustado se quitó: se vuelve a cargar una vez con el valor confirmado
+        assertEquals(6, productoRepository.findById(ajustado.getId()).orElseThrow().getCantidadInicial());
+        assertEquals(6, productoRepository.findById(ajustado.getId()).orElseThrow().getCantidadInicial());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void busquedaPorCategoriaSaleDeLaCacheDeConsultasHastaQueSeEscribe() {
+        String categoria = "Categoria L2 " + System.nanoTime();
+        assertTrue(productoService.buscarProductosPorCategoria(categoria, 50).isEmpty());
+
+        // Sin la entrada de la cache de Spring (caducada o en otra instancia) la consulta sale de la de Hibernate
+        vaciarBusquedas();
+        statistics.clear();
+        assertTrue(productoService.buscarProductosPorCategoria(categoria, 50).isEmpty());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        productoService.crearProducto(Producto.builder()
+                .nombre("Consulta L2 " + System.nanoTime())
+                .categoria(categoria)
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+        vaciarBusquedas();
+        assertEquals(1, productoService.buscarProductosPorCategoria(categoria, 50).size());
+    }
+
+    private void vaciarBusquedas() {
+        cacheManager.getCache(CacheConfig.BUSQUEDA_PRODUCTOS).clear();
+    }
+
+    private static Producto nuevoProducto(String nombre) {
+        return Producto.builder()
+                .nombre(nombre + " " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build();
+    }
+}
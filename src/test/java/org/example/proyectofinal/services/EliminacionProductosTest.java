@@ -0,0 +1,86 @@
+package org.example.proyectofinal.services;
+
+import org.example.proyectofinal.entities.Producto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Eliminación de productos con historial: borrado inmediato con sentencias en bloque,
+ * borrado lógico con purga diferida por bloques y eliminación de varios ids a la vez.
+ */
+@SpringBootTest(properties = {"productos.purga.tamanio-bloque=7", "productos.purga.intervalo=1h"})
+@ActiveProfiles("test")
+class EliminacionProductosTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private PurgaProductosService purgaProductosService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void eliminacionInmediataBorraProductoEHistorial() {
+        Producto producto = crearConHistorial("Eliminar inmediato", 20);
+
+        productoService.eliminarProducto(producto.getId());
+
+        assertEquals(0, contarFilas("producto", producto.getId()));
+        assertEquals(0, contarFilas("movimiento", producto.getId()));
+    }
+
+    @Test
+    void eliminacionDiferidaOcultaYLuegoPurgaPorBloques() {
+        Producto producto = crearConHistorial("Eliminar diferido", 20);
+
+        productoService.eliminarProducto(producto.getId(), ProductoService.ModoEliminacion.DIFERIDO);
+
+        assertThrows(RuntimeException.class, () -> productoService.obtenerProductoPorId(producto.getId()));
+        assertTrue(productoService.listarProductos().stream().noneMatch(p -> p.getId().equals(producto.getId())));
+        assertEquals(21, contarFilas("movimiento", producto.getId()));
+
+        assertEquals(21, purgaProductosService.purgar(producto.getId()));
+        assertEquals(0, contarFilas("movimiento", producto.getId()));
+        assertEquals(0, contarFilas("producto", producto.getId()));
+    }
+
+    @Test
+    void eliminacionEnLoteIgnoraIdsInexistentes() {
+        Producto primero = crearConHistorial("Lote eliminar A", 3);
+        Producto segundo = crearConHistorial("Lote eliminar B", 3);
+
+        int eliminados = productoService.eliminarProductos(
+                List.of(primero.getId(), segundo.getId(), -1L), ProductoService.ModoEliminacion.INMEDIATO);
+
+        assertEquals(2, eliminados);
+        assertEquals(0, contarFilas("movimiento", primero.getId()) + contarFilas("movimiento", segundo.getId()));
+    }
+
+    private Producto crearConHistorial(String nombre, int ajustes) {
+        Producto producto = productoService.crearProducto(Producto.builder()
+                .nombre(nombre + " " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(100)
+                .build(), "tester");
+        for (int i = 0; i < ajustes; i++) {
+            productoService.ajustarCantidad(producto.getId(), 1, "entrada", "tester");
+        }
+        return producto;
+    }
+
+    private int contarFilas(String tabla, Long productoId) {
+        String columna = tabla.equals("producto") ? "id" : "producto_id";
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + tabla + " WHERE " + columna + " = ?", Integer.class, productoId);
+    }
+}
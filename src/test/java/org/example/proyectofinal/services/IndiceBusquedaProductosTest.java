@@ -0,0 +1,114 @@
+package org.example.proyectofinal.services;
+
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndiceBusquedaProductosTest {
+
+    private final ProductoRepository productoRepository = mock(ProductoRepository.class);
+    private final IndiceBusquedaProductos indice = new IndiceBusquedaProductos(productoRepository);
+
+    @BeforeEach
+    void habilitar() {
+        ReflectionTestUtils.setField(indice, "habilitado", true);
+    }
+
+    @Test
+    void soloEstaDisponibleUnaVezConstruido() {
+        cargar(producto(1L, "Mesa", "Muebles"));
+        assertFalse(indice.isDisponible());
+
+        indice.reconstruir();
+        assertTrue(indice.isDisponible());
+
+        IndiceBusquedaProductos deshabilitado = new IndiceBusquedaProductos(productoRepository);
+        deshabilitado.reconstruir();
+        assertFalse(deshabilitado.isDisponible());
+    }
+
+    @Test
+    void ordenaPorIgualPrefijoInicioDePalabraYContiene() {
+        cargar(producto(4L, "Comesana", "Muebles"),
+                producto(2L, "Mesada grande", "Muebles"),
+                producto(3L, "Gran mesa", "Muebles"),
+                producto(1L, "Mesa", "Muebles"),
+                producto(6L, "Mesa alta", "Muebles"),
+                producto(5L, "Silla", "Muebles"));
+        indice.reconstruir();
+
+        // A igual rango, primero la coincidencia más temprana y después el valor más corto
+        assertEquals(List.of(1L, 6L, 2L, 3L, 4L), indice.buscarPorNombre("MESA", 10));
+        assertEquals(List.of(1L, 6L), indice.buscarPorNombre("mesa", 2));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), indice.buscarPorCategoria("mueb", 10));
+    }
+
+    @Test
+    void trigramasSoloDanCandidatosYSeVerificaLaSubcadena() {
+        cargar(producto(1L, "abcxbcd", "Test"),
+                producto(2L, "xabcdx", "Test"),
+                producto(3L, "Abrigo", "Ropa"),
+                producto(4L, "Cabina", "Test"));
+        indice.reconstruir();
+
+        // "abc" y "bcd" están en el primero, pero no seguidos
+        assertEquals(List.of(2L), indice.buscarPorNombre("abcd", 10));
+        assertEquals(List.of(), indice.buscarPorNombre("zzz", 10));
+        assertEquals(List.of(), indice.buscarPorNombre("", 10));
+
+        // Términos de uno y dos caracteres con su propia lista
+        assertEquals(List.of(3L, 1L, 2L, 4L), indice.buscarPorNombre("ab", 10));
+        assertEquals(List.of(2L, 1L), indice.buscarPorNombre("x", 10));
+        assertEquals(List.of(3L), indice.buscarPorCategoria("r", 10));
+    }
+
+    @Test
+    void altasCambiosYBajasActualizanElIndice() {
+        cargar(producto(1L, "Lámpara", "Iluminación"));
+        indice.reconstruir();
+
+        indice.indexar(producto(2L, "Lámpara de pie", "Iluminación"));
+        assertEquals(List.of(1L, 2L), indice.buscarPorNombre("lámpara", 10));
+
+        indice.indexar(producto(2L, "Flexo", "Escritorio"));
+        assertEquals(List.of(1L), indice.buscarPorNombre("lámpara", 10));
+        assertEquals(List.of(2L), indice.buscarPorNombre("fle", 10));
+        assertEquals(List.of(2L), indice.buscarPorCategoria("escri", 10));
+        assertEquals(List.of(1L), indice.buscarPorCategoria("ilum", 10));
+
+        indice.indexar(List.of(producto(3L, "Foco", "Iluminación"), producto(4L, "Foco LED", "Iluminación")));
+        assertEquals(List.of(3L, 4L), indice.buscarPorNombre("fo", 10));
+
+        indice.eliminar(1L);
+        indice.eliminar(3L);
+        assertEquals(List.of(), indice.buscarPorNombre("lámpara", 10));
+        assertEquals(List.of(4L), indice.buscarPorNombre("foco", 10));
+        assertEquals(List.of(4L), indice.buscarPorCategoria("ilum", 10));
+    }
+
+    private void cargar(Producto... productos) {
+        List<Producto> ordenados = Arrays.stream(productos)
+                .sorted(Comparator.comparing(Producto::getId))
+                .toList();
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenReturn(ordenados);
+    }
+
+    private static Producto producto(Long id, String nombre, String categoria) {
+        return Producto.builder().id(id).nombre(nombre).categoria(categoria).precio(1.0).build();
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.proyectofinal.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.proyectofinal.dto.MovimientoResumen;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Migraciones sobre PostgreSQL real: la base se siembra con V1-V3 y el arranque aplica el resto con
+ * Flyway, así que V8 convierte en particionada una tabla movimiento con datos de varios meses. El
+ * contexto arranca con ddl-auto=validate: las entidades tienen que coincidir con el esquema migrado.
+ * Después un ciclo de ArchivadorMovimientos pasa a ficheros los meses fuera de la retención.
+ * Necesita Docker; sin él la clase se omite.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MigracionesPostgresTest {
+
+    private static final DateTimeFormatter SUFIJO_PARTICION = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int RETENCION_MESES = 12;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @TempDir
+    static Path directorio;
+
+    private record Sembrado(long id, long productoId, String productoNombre, LocalDateTime fecha) {
+    }
+
+    // Filas de movimiento sembradas antes de V8, por mes
+    private static final Map<YearMonth, List<Sembrado>> sembrados = new TreeMap<>();
+    private static long productoArchivado;
+
+    @DynamicPropertySource
+    static void basePostgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("movimientos.archivo.habilitado", () -> "true");
+        registry.add("movimientos.archivo.directorio", () -> directorio.toString());
+        registry.add("movimientos.archivo.retencion-meses", () -> RETENCION_MESES);
+        // El test lanza el ciclo de mantenimiento; el programado no debe adelantarse
+        registry.add("movimientos.particiones.retardo-inicial", () -> "1h");
+    }
+
+    // Antes de que arranque el contexto: esquema hasta V3 y datos como los de una base ya en uso
+    @BeforeAll
+    static void sembrarAntesDeV8() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").target("3").load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        long mesa = insertarProducto(jdbc, "Mesa");
+        long silla = insertarProducto(jdbc, "Silla");
+        productoArchivado = mesa;
+        YearMonth actual = YearMonth.now();
+        // Dos meses fuera de la retención y dos dentro
+        Map<YearMonth, Integer> filasPorMes = Map.of(
+                actual.minusMonths(20), 5,
+                actual.minusMonths(RETENCION_MESES + 2), 3,
+                actual.minusMonths(2), 2,
+                actual, 3);
+        filasPorMes.forEach((mes, filas) -> {
+            List<Sembrado> delMes = new ArrayList<>();
+            for (int i = 0; i < filas; i++) {
+                long productoId = i % 2 == 0 ? mesa : silla;
+                // Día 10: lejos del cambio de mes aunque la JVM y PostgreSQL usen zonas horarias distintas
+                LocalDateTime fecha = mes.atDay(10).atTime(12, i);
+                Long id = jdbc.queryForObject("INSERT INTO movimiento (producto_id, usuario, tipo, cantidad, motivo, fecha_movimiento) " +
+                                "VALUES (?, 'semilla', ?, ?, ?, ?) RETURNING id", Long.class,
+                        productoId, i % 2 == 0 ? "ENTRADA" : "SALIDA", i + 1, "sembrado " + mes + " " + i, fecha);
+                delMes.add(new Sembrado(id, productoId, productoId == mesa ? "Mesa" : "Silla", fecha));
+            }
+            sembrados.put(mes, delMes);
+        });
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ArchivadorMovimientos archivadorMovimientos;
+
+    @Autowired
+    private ArchivoMovimientos archivoMovimientos;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @Order(1)
+    void v8ConservaCadaFilaEnLaParticionDeSuMes() {
+        assertTrue(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'movimiento'::regclass)", Boolean.class));
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('movimiento_sin_particionar')::text", String.class));
+        assertEquals(10.5, jdbcTemplate.queryForObject("SELECT precio FROM producto WHERE id = ?", Double.class, productoArchivado));
+
+        long total = sembrados.values().stream().mapToLong(List::size).sum();
+        assertEquals(total, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movimiento", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movimiento_default", Long.class));
+        sembrados.forEach((mes, filas) -> assertEquals(ids(filas),
+                jdbcTemplate.queryForList("SELECT id FROM " + particion(mes) + " ORDER BY id", Long.class), mes::toString));
+    }
+
+    @Test
+    @Order(2)
+    void mantenerArchivaLosMesesFueraDeLaRetencion() throws Exception {
+        archivadorMovimientos.mantener();
+
+        YearMonth limite = YearMonth.now().minusMonths(RETENCION_MESES);
+        for (Map.Entry<YearMonth, List<Sembrado>> entrada : sembrados.entrySet()) {
+            YearMonth mes = entrada.getKey();
+            List<Sembrado> filas = entrada.getValue();
+            if (mes.isBefore(limite)) {
+                assertNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, particion(mes)), mes::toString);
+                List<MovimientoResumen> archivadas = archivoMovimientos.buscarAntesDe(movimiento -> true,
+                        mes.plusMonths(1).atDay(1).atStartOfDay(), Long.MAX_VALUE, mes.atDay(1).atStartOfDay(), Integer.MAX_VALUE);
+                assertEquals(ids(filas), archivadas.stream().map(MovimientoResumen::id).sorted().toList(), mes::toString);
+                for (MovimientoResumen archivada : archivadas) {
+                    Sembrado sembrado = filas.stream().filter(fila -> fila.id() == archivada.id()).findFirst().orElseThrow();
+                    assertEquals(sembrado.productoId(), archivada.productoId());
+                    assertEquals(sembrado.productoNombre(), archivada.productoNombre());
+                    assertEquals(sembrado.fecha(), archivada.fechaMovimiento());
+                }
+            } else {
+                assertEquals(ids(filas), jdbcTemplate.queryForList(
+                        "SELECT id FROM " + particion(mes) + " ORDER BY id", Long.class), mes::toString);
+            }
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = 'movimiento'::regclass AND c.relname LIKE 'movimiento\\_p%' AND c.relname < ?", Long.class, particion(limite)));
+        // Las particiones del mes actual y de los adelantados siguen ahí para las escrituras nuevas
+        assertTrue(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                particion(YearMonth.now().plusMonths(2))));
+
+        List<Long> esperados = sembrados.values().stream()
+                .flatMap(List::stream)
+                .filter(fila -> fila.productoId() == productoArchivado)
+                .sorted(Comparator.comparing(Sembrado::fecha).thenComparing(Sembrado::id).reversed())
+                .map(Sembrado::id)
+                .toList();
+        assertEquals(esperados, historialConArchivados(productoArchivado));
+    }
+
+    private List<Long> historialConArchivados(long productoId) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode pagina = objectMapper.readTree(mockMvc.perform(get("/api/movimientos/{productoId}", productoId)
+                            .param("size", "2")
+                            .param("incluirArchivados", "true")
+                            .param("cursor", cursor == null ? "" : cursor)
+                            .with(jwt().authorities(new SimpleGrantedAuthority("EMPLEADO"))))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            pagina.get("contenido").forEach(movimiento -> ids.add(movimiento.get("id").asLong()));
+            cursor = pagina.get("siguienteCursor").isNull() ? null : pagina.get("siguienteCursor").asText();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static long insertarProducto(JdbcTemplate jdbc, String nombre) {
+        return jdbc.queryForObject("INSERT INTO producto (nombre, categoria, precio, cantidad_inicial) " +
+                "VALUES (?, 'Semilla', 10.50, 20) RETURNING id", Long.class, nombre);
+    }
+
+    private static List<Long> ids(List<Sembrado> filas) {
+        return filas.stream().map(Sembrado::id).sorted().toList();
+    }
+
+    private static String particion(YearMonth mes) {
+        return "movimiento_p" + mes.format(SUFIJO_PARTICION);
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.proyectofinal.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.proyectofinal.entities.Movimiento;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.MovimientoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Modo asíncrono del registro de movimientos: escritura por lotes, espera y guardado en el hilo
+ * que registra cuando la cola está llena, y vaciado de la cola al detenerse.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RegistroMovimientosTest {
+
+    @Autowired
+    private MovimientoRepository movimientoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final DifusorMovimientos difusor = mock(DifusorMovimientos.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Producto producto;
+
+    @BeforeEach
+    void crearProducto() {
+        producto = productoService.crearProducto(Producto.builder()
+                .nombre("Registro " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build(), "tester");
+    }
+
+    @Test
+    void escribeEnLotesDelTamanioConfigurado() throws Exception {
+        RegistroMovimientos registro = nuevoRegistro(movimientoRepository, 100, 5, Duration.ofSeconds(1), Duration.ofMillis(50));
+        registro.start();
+        try {
+            // Se encolan todos juntos al confirmar la transacción
+            new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+                for (int i = 0; i < 12; i++) {
+                    registro.registrar(movimiento("lote"));
+                }
+                assertEquals(0, registro.pendientes());
+            });
+            esperarMovimientos("lote", 12);
+        } finally {
+            registro.stop();
+        }
+
+        assertEquals(3, meterRegistry.timer("movimientos.auditoria.flush").count());
+        assertEquals(12, meterRegistry.counter("movimientos.auditoria.escritos").count());
+        verify(difusor, times(3)).publicarDespuesDelCommit(anyCollection());
+    }
+
+    @Test
+    void conLaColaLlenaGuardaEnElHiloQueRegistraYPublica() throws Exception {
+        CountDownLatch escribiendo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        MovimientoRepository repositorio = mock(MovimientoRepository.class, delegatesTo(movimientoRepository));
+        doAnswer(invocacion -> {
+            escribiendo.countDown();
+            liberar.await(10, TimeUnit.SECONDS);
+            return movimientoRepository.saveAll(invocacion.<Iterable<Movimiento>>getArgument(0));
+        }).when(repositorio).saveAll(any());
+        RegistroMovimientos registro = nuevoRegistro(repositorio, 1, 1, Duration.ofMillis(50), Duration.ofMillis(100));
+        registro.start();
+        try {
+            registro.registrar(movimiento("en escritura"));
+            assertTrue(escribiendo.await(5, TimeUnit.SECONDS));
+            registro.registrar(movimiento("en cola"));
+            assertEquals(1, registro.pendientes());
+
+            // Desde afterCommit, como al registrar dentro de una transacción de ProductoService
+            long inicio = System.nanoTime();
+            new TransactionTemplate(transactionManager).executeWithoutResult(
+                    estado -> registro.registrar(movimiento("desborde")));
+            assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(100), "No esperó por la cola llena");
+
+            assertEquals(1, contarMovimientos("desborde"));
+            assertEquals(0, contarMovimientos("en escritura"));
+            assertEquals(1, meterRegistry.counter("movimientos.auditoria.desbordes").count());
+            verify(difusor).publicar(argThat(resumenes ->
+                    resumenes.size() == 1 && "desborde".equals(resumenes.get(0).motivo())));
+        } finally {
+            liberar.countDown();
+            registro.stop();
+        }
+        assertEquals(1, contarMovimientos("en escritura"));
+        assertEquals(1, contarMovimientos("en cola"));
+    }
+
+    @Test
+    void alDetenerseEscribeLoPendiente() {
+        RegistroMovimientos registro = nuevoRegistro(movimientoRepository, 1000, 50, Duration.ofMillis(500), Duration.ofMillis(50));
+        registro.start();
+        for (int i = 0; i < 120; i++) {
+            registro.registrar(movimiento("apagado"));
+        }
+        registro.stop();
+
+        assertFalse(registro.isRunning());
+        assertEquals(0, registro.pendientes());
+        assertEquals(120, contarMovimientos("apagado"));
+    }
+
+    private RegistroMovimientos nuevoRegistro(MovimientoRepository repositorio, int capacidadCola, int tamanioLote,
+                                              Duration intervaloFlush, Duration esperaColaLlena) {
+        return new RegistroMovimientos(repositorio, difusor, transactionManager, meterRegistry,
+                "asincrono", capacidadCola, tamanioLote, intervaloFlush, esperaColaLlena);
+    }
+
+    private Movimiento movimiento(String motivo) {
+        return Movimiento.builder()
+                .producto(producto)
+                .usuario("tester")
+                .tipo("ENTRADA")
+                .cantidad(1)
+                .motivo(motivo)
+                .fechaMovimiento(LocalDateTime.now())
+                .build();
+    }
+
+    private long contarMovimientos(String motivo) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movimiento WHERE producto_id = ? AND motivo = ?",
+                Long.class, producto.getId(), motivo);
+    }
+
+    private void esperarMovimientos(String motivo, long esperados) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (contarMovimientos(motivo) < esperados && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertEquals(esperados, contarMovimientos(motivo));
+    }
+}
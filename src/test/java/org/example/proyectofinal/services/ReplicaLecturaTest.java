@@ -0,0 +1,181 @@
+package org.example.proyectofinal.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.proyectofinal.entities.Producto;
+import org.example.proyectofinal.repositories.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Enrutado primaria/réplica con dos bases H2: las lecturas readOnly van a la réplica, las
+ * escrituras a la primaria, y quien acaba de escribir lee de la primaria durante la ventana.
+ * La "replicación" se simula copiando la primaria con SCRIPT y marcando las filas de la réplica.
+ * Con las caches activas, lo leído de la réplica no llega ni a las caches de Spring ni a la de
+ * segundo nivel.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primaria;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "datasource.replica.jdbc-url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "datasource.replica.username=sa",
+        "datasource.replica.ventana-lectura-propia=1s",
+        "spring.cache.type=none",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@ActiveProfiles("test")
+class ReplicaLecturaTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("dataSourcePrimaria")
+    private DataSource primaria;
+
+    @Autowired
+    @Qualifier("dataSourceReplica")
+    private DataSource replica;
+
+    @AfterEach
+    void limpiarUsuario() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void lecturasVanALaReplicaSalvoLaVentanaDeQuienEscribe() throws Exception {
+        autenticar("ana");
+        Producto producto = productoService.crearProducto(nuevoProducto("Replicado"), "ana");
+        replicar();
+        new JdbcTemplate(replica).update("UPDATE producto SET nombre = 'En réplica' WHERE id = ?", producto.getId());
+
+        assertEquals(producto.getNombre(), leerNombre(producto.getId()));
+
+        autenticar("bea");
+        assertEquals("En réplica", leerNombre(producto.getId()));
+
+        SecurityContextHolder.clearContext();
+        assertEquals("En réplica", leerNombre(producto.getId()));
+
+        autenticar("ana");
+        Thread.sleep(1200);
+        assertEquals("En réplica", leerNombre(producto.getId()));
+    }
+
+    @Test
+    void escriturasVanALaPrimaria() {
+        Producto producto = productoService.crearProducto(nuevoProducto("Escritura"), "tester");
+        replicar();
+
+        productoService.ajustarCantidad(producto.getId(), 5, "entrada", "tester");
+
+        String consulta = "SELECT cantidad_inicial FROM producto WHERE id = ?";
+        assertEquals(15, new JdbcTemplate(primaria).queryForObject(consulta, Integer.class, producto.getId()));
+        assertEquals(10, new JdbcTemplate(replica).queryForObject(consulta, Integer.class, producto.getId()));
+    }
+
+    @Nested
+    @TestPropertySource(properties = {
+            "spring.datasource.url=jdbc:h2:mem:primaria-caches;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+            "datasource.replica.jdbc-url=jdbc:h2:mem:replica-caches;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+            "spring.cache.type=caffeine",
+            "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+            "spring.jpa.properties.hibernate.cache.use_query_cache=true"})
+    class ConCaches {
+
+        @Autowired
+        private ProductoService productoService;
+
+        @Autowired
+        private ProductoRepository productoRepository;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        @Autowired
+        @Qualifier("dataSourcePrimaria")
+        private DataSource primaria;
+
+        @Autowired
+        @Qualifier("dataSourceReplica")
+        private DataSource replica;
+
+        @Test
+        void lecturasDeLaReplicaNoLlenanLasCachesCompartidas() {
+            Producto producto = productoService.crearProducto(nuevoProducto("Cacheado"), "tester");
+            replicar(primaria, replica);
+            new JdbcTemplate(replica).update("UPDATE producto SET nombre = 'En réplica' WHERE id = ?", producto.getId());
+
+            // Lectura de solo lectura que va a la réplica: ve su dato pero no lo deja en la cache de segundo nivel
+            entityManagerFactory.getCache().evict(Producto.class, producto.getId());
+            TransactionTemplate soloLectura = new TransactionTemplate(transactionManager);
+            soloLectura.setReadOnly(true);
+            assertEquals("En réplica", soloLectura.execute(estado ->
+                    productoRepository.findById(producto.getId()).orElseThrow().getNombre()));
+            assertFalse(entityManagerFactory.getCache().contains(Producto.class, producto.getId()));
+
+            // Las caches de Spring se cargan desde la primaria, aunque la petición sea anónima
+            assertEquals(producto.getNombre(), productoService.obtenerProductoPorId(producto.getId()).getNombre());
+            assertTrue(productoService.listarProductos().stream().anyMatch(p -> p.getNombre().equals(producto.getNombre())));
+            assertEquals(List.of(producto.getId()), productoService.buscarProductosPorNombre(producto.getNombre(), 10)
+                    .stream().map(Producto::getId).toList());
+            assertTrue(entityManagerFactory.getCache().contains(Producto.class, producto.getId()));
+        }
+    }
+
+    // Lectura de solo lectura sin las caches de ProductoService, que siempre cargan desde la primaria
+    private String leerNombre(Long id) {
+        TransactionTemplate soloLectura = new TransactionTemplate(transactionManager);
+        soloLectura.setReadOnly(true);
+        return soloLectura.execute(estado -> productoRepository.findById(id).orElseThrow().getNombre());
+    }
+
+    private void replicar() {
+        replicar(primaria, replica);
+    }
+
+    private static void replicar(DataSource primaria, DataSource replica) {
+        List<String> script = new JdbcTemplate(primaria).queryForList("SCRIPT", String.class);
+        JdbcTemplate destino = new JdbcTemplate(replica);
+        destino.execute("DROP ALL OBJECTS");
+        script.forEach(destino::execute);
+    }
+
+    private static void autenticar(String usuario) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(usuario, null, List.of()));
+    }
+
+    private static Producto nuevoProducto(String nombre) {
+        return Producto.builder()
+                .nombre(nombre + " " + System.nanoTime())
+                .categoria("Test")
+                .precio(1.0)
+                .cantidadInicial(10)
+                .build();
+    }
+}
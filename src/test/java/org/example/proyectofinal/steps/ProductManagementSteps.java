@@ -5,13 +5,17 @@ package org.example.proyectofinal.steps;
                     import io.cucumber.java.en.Then;
                     import io.cucumber.java.en.And;
                     import org.example.proyectofinal.components.HttpClientx;
+                    import org.example.proyectofinal.dto.PaginaCursor;
                     import org.example.proyectofinal.entities.Producto;
                     import org.springframework.http.ResponseEntity;
                     import org.springframework.stereotype.Component;
                     import com.fasterxml.jackson.databind.ObjectMapper;
                     import com.fasterxml.jackson.core.type.TypeReference;
 
+                    import java.util.ArrayList;
+                    import java.util.HashSet;
                     import java.util.List;
+                    import java.util.Map;
 
                     import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +31,8 @@ package org.example.proyectofinal.steps;
                         private Exception thrownException;
                         private Long createdProductId;
                         private Producto createdProduct;
+                        private final List<Long> createdProductIds = new ArrayList<>();
+                        private final List<PaginaCursor<Map<String, Object>>> pages = new ArrayList<>();
 
                         public ProductManagementSteps(HttpClientx httpClientx) {
                             this.httpClientx = httpClientx;
@@ -92,6 +98,14 @@ package org.example.proyectofinal.steps;
                             i_have_created_a_complete_product("Test Product for List", "Test description", "Test Category", 99.99, 10);
                         }
 
+                        @Given("there are {int} existing products in the system")
+                        public void there_are_n_existing_products_in_the_system(Integer count) {
+                            for (int i = 1; i <= count; i++) {
+                                i_have_created_a_complete_product("Paged Product " + i, "Test description", "Test Category", 10.0 + i, i);
+                                createdProductIds.add(createdProductId);
+                            }
+                        }
+
                         @When("I request all products")
                         public void i_request_all_products() {
                             try {
@@ -101,6 +115,25 @@ package org.example.proyectofinal.steps;
                             }
                         }
 
+                        @When("I request every page of products with size {int} and fields {string}")
+                        public void i_request_every_page_of_products(Integer size, String fields) {
+                            try {
+                                String cursor = null;
+                                do {
+                                    response = httpClientx.getProductsPage(size, fields, cursor);
+                                    assertTrue(response.getStatusCode().is2xxSuccessful(), "Failed to get products page");
+                                    PaginaCursor<Map<String, Object>> page = objectMapper.readValue(response.getBody(),
+                                            new TypeReference<PaginaCursor<Map<String, Object>>>(){});
+                                    pages.add(page);
+                                    cursor = page.siguienteCursor();
+                                    // Guard against a cursor that never advances
+                                    assertTrue(pages.size() <= createdProductIds.size() + 1, "Too many pages");
+                                } while (cursor != null);
+                            } catch (Exception e) {
+                                thrownException = e;
+                            }
+                        }
+
                         @When("I request the product by its ID")
                         public void i_request_the_product_by_its_id() {
                             try {
@@ -259,6 +292,28 @@ package org.example.proyectofinal.steps;
                             }
                         }
 
+                        @Then("I should receive {int} pages with at most {int} products and only the fields {string}")
+                        public void i_should_receive_pages_with_at_most_products(Integer pageCount, Integer size, String fields) {
+                            assertNull(thrownException, () -> "Failed to read products pages: " + thrownException);
+                            assertEquals(pageCount, pages.size());
+                            List<String> expectedFields = List.of(fields.split(","));
+                            for (PaginaCursor<Map<String, Object>> page : pages) {
+                                assertNotNull(page.contenido());
+                                assertTrue(page.contenido().size() <= size);
+                                assertTrue(page.contenido().stream().allMatch(p -> expectedFields.containsAll(p.keySet())));
+                            }
+                        }
+
+                        @Then("the pages should list every product once, in id order")
+                        public void the_pages_should_list_every_product_once_in_id_order() {
+                            List<Long> ids = pages.stream()
+                                    .flatMap(page -> page.contenido().stream())
+                                    .map(p -> ((Number) p.get("id")).longValue())
+                                    .toList();
+                            assertEquals(ids.size(), new HashSet<>(ids).size(), () -> "Duplicated products across pages: " + ids);
+                            assertEquals(createdProductIds.stream().sorted().toList(), ids, "Pages skipped products or are out of order");
+                        }
+
                         @Then("the product creation should fail with unauthorized error")
                         public void the_product_creation_should_fail_with_unauthorized_error() {
                             assertNotNull(response);
@@ -0,0 +1,122 @@
+package org.example.proyectofinal.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataSourceLimitadoTest {
+
+    private final DataSource delegado = mock(DataSource.class);
+    private final Connection conexion = mock(Connection.class);
+
+    @BeforeEach
+    void conexionesDelDelegado() throws SQLException {
+        when(delegado.getConnection()).thenReturn(conexion);
+        when(delegado.getConnection("usuario", "clave")).thenReturn(conexion);
+    }
+
+    @Test
+    void cadaConexionOcupaUnPermisoHastaSuPrimerClose() throws SQLException {
+        DataSourceLimitado dataSource = new DataSourceLimitado(delegado, 2, Duration.ofSeconds(1));
+
+        Connection primera = dataSource.getConnection();
+        Connection segunda = dataSource.getConnection("usuario", "clave");
+        assertEquals(0, dataSource.getDisponibles());
+
+        primera.close();
+        primera.close();
+        assertEquals(1, dataSource.getDisponibles());
+        verify(conexion, times(2)).close();
+
+        segunda.close();
+        assertEquals(2, dataSource.getDisponibles());
+    }
+
+    @Test
+    void sinPermisoFallaAlAgotarLaEspera() throws SQLException {
+        DataSourceLimitado dataSource = new DataSourceLimitado(delegado, 1, Duration.ofMillis(100));
+        Connection ocupada = dataSource.getConnection();
+
+        long inicio = System.nanoTime();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, dataSource.getDisponibles());
+        verify(delegado, times(1)).getConnection();
+
+        ocupada.close();
+        dataSource.getConnection().close();
+        assertEquals(1, dataSource.getDisponibles());
+    }
+
+    @Test
+    void quienEsperaRecibeElPermisoAlCerrarseOtraConexion() throws Exception {
+        DataSourceLimitado dataSource = new DataSourceLimitado(delegado, 1, Duration.ofSeconds(5));
+        Connection ocupada = dataSource.getConnection();
+
+        CompletableFuture<Connection> esperando = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        long limite = System.currentTimeMillis() + 5000;
+        while (dataSource.getEnEspera() == 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dataSource.getEnEspera());
+        assertFalse(esperando.isDone());
+
+        ocupada.close();
+        esperando.get(5, TimeUnit.SECONDS).close();
+        assertEquals(1, dataSource.getDisponibles());
+    }
+
+    @Test
+    void siElDelegadoFallaElPermisoSeDevuelve() throws SQLException {
+        DataSourceLimitado dataSource = new DataSourceLimitado(delegado, 1, Duration.ofMillis(100));
+        SQLException error = new SQLException("sin conexión");
+        when(delegado.getConnection()).thenThrow(error).thenThrow(new IllegalStateException("pool cerrado"));
+        when(delegado.getConnection("usuario", "clave")).thenThrow(error);
+
+        assertSame(error, assertThrows(SQLException.class, dataSource::getConnection));
+        assertThrows(IllegalStateException.class, dataSource::getConnection);
+        assertSame(error, assertThrows(SQLException.class, () -> dataSource.getConnection("usuario", "clave")));
+        assertEquals(1, dataSource.getDisponibles());
+    }
+
+    @Test
+    void closeQueFallaTambienDevuelveElPermisoYElRestoSeDelega() throws SQLException {
+        DataSourceLimitado dataSource = new DataSourceLimitado(delegado, 1, Duration.ofMillis(100));
+        SQLException error = new SQLException("conexión rota");
+        doThrow(error).when(conexion).close();
+        when(conexion.getAutoCommit()).thenReturn(true);
+        doThrow(error).when(conexion).commit();
+
+        Connection envuelta = dataSource.getConnection();
+        assertTrue(envuelta.getAutoCommit());
+        // Las excepciones del delegado llegan tal cual, no envueltas por el proxy
+        assertSame(error, assertThrows(SQLException.class, envuelta::commit));
+
+        assertSame(error, assertThrows(SQLException.class, envuelta::close));
+        assertEquals(1, dataSource.getDisponibles());
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.proyectofinal.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DecodificadorJwtCacheadoTest {
+
+    private final RelojManual reloj = new RelojManual(Instant.parse("2026-01-01T10:00:00Z"));
+    private final AtomicInteger verificaciones = new AtomicInteger();
+
+    private final JwtDecoder verificador = token -> {
+        verificaciones.incrementAndGet();
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .claim("realm_access", Map.of("roles", List.of("ADMIN")))
+                .issuedAt(reloj.instant())
+                .expiresAt(reloj.instant().plus(Duration.ofMinutes(5)))
+                .build();
+    };
+
+    @Test
+    void reutilizaElTokenVerificadoHastaSuExpiracion() {
+        DecodificadorJwtCacheado decodificador = new DecodificadorJwtCacheado(verificador, 100, Duration.ofHours(1), reloj);
+
+        Jwt primero = decodificador.decode("token-a");
+        reloj.avanzar(Duration.ofMinutes(4));
+        assertSame(primero, decodificador.decode("token-a"));
+        assertEquals(1, verificaciones.get());
+
+        reloj.avanzar(Duration.ofMinutes(2));
+        decodificador.decode("token-a");
+        assertEquals(2, verificaciones.get());
+    }
+
+    @Test
+    void conversorDevuelveLasMismasAuthoritiesParaLosMismosRoles() {
+        KeycloakRoleConverter conversor = new KeycloakRoleConverter();
+        Jwt jwt = verificador.decode("token-b");
+
+        assertSame(conversor.convert(jwt), conversor.convert(jwt));
+        assertEquals("ADMIN", conversor.convert(jwt).iterator().next().getAuthority());
+    }
+
+    private static final class RelojManual extends Clock {
+        private Instant ahora;
+
+        private RelojManual(Instant inicio) {
+            this.ahora = inicio;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
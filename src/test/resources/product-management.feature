@@ -17,6 +17,13 @@ Feature: Product Management
             Then I should receive a list of products
             And the response status should be 200
 
+          Scenario: Page through products by cursor
+            Given there are 5 existing products in the system
+            When I request every page of products with size 2 and fields "id,nombre"
+            Then I should receive 3 pages with at most 2 products and only the fields "id,nombre"
+            And the pages should list every product once, in id order
+            And the response status should be 200
+
           Scenario: Get product by ID
             Given I have created a complete product with name "Search Product", description "Searchable product", category "Books", price 50.0, and quantity 25
             When I request the product by its ID